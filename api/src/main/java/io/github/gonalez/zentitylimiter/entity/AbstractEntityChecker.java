@@ -19,6 +19,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import io.github.gonalez.zentitylimiter.entity.event.EntityCheckEvent;
 import io.github.gonalez.zentitylimiter.rule.Rule;
 import org.bukkit.entity.Entity;
@@ -26,21 +27,46 @@ import org.bukkit.event.Event;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
 /**
  * Basic implementation for {@link EntityChecker}. This class also calls some events, for extra functionality,
  * i.e {@link EntityCheckEvent}.
+ *
+ * <p>If {@code clusterAware} is true, all the entities extracted when checking an entity are marked as covered
+ * for its rule, and covered entities are not checked again until the {@link #newCycle() next cycle}. Then a dense
+ * area of entities is only extracted once per cycle, instead of once for each entity of the area.
  */
 public abstract class AbstractEntityChecker implements EntityChecker {
   private final RuleDescription.Provider ruleDescriptionProvider;
   private final EntityExtractor entityExtractor;
 
+  private final boolean clusterAware;
+  // The entities covered by the checks of this cycle, by rule
+  private final Map<Rule, Set<UUID>> coveredEntities = new HashMap<>();
+
   protected PluginManager pluginManager;
 
   public AbstractEntityChecker(
       RuleDescription.Provider ruleDescriptionProvider,
       EntityExtractor entityExtractor) {
+    this(ruleDescriptionProvider, entityExtractor, false);
+  }
+
+  public AbstractEntityChecker(
+      RuleDescription.Provider ruleDescriptionProvider,
+      EntityExtractor entityExtractor,
+      boolean clusterAware) {
     this.ruleDescriptionProvider = checkNotNull(ruleDescriptionProvider);
     this.entityExtractor = checkNotNull(entityExtractor);
+    this.clusterAware = clusterAware;
   }
 
   @Override
@@ -57,6 +83,31 @@ public abstract class AbstractEntityChecker implements EntityChecker {
   protected abstract ResultType analyzeExceededEntities(
       Rule rule, Entity checked, ImmutableList<Entity> entities);
 
+  /**
+   * Analyzes the entities found within the limit set by the {@code checked} entity rule. When the limit is exceeded,
+   * this is called with the entities allowed by the limit before {@link #analyzeExceededEntities analyzing} the
+   * rest. Nothing is done by default.
+   */
+  protected ResultType analyzeEntitiesWithinLimit(Rule rule, Entity checked, ImmutableList<Entity> entities) {
+    return ResultType.TOO_FEW_ENTITIES;
+  }
+
+  /**
+   * @return whether the given entity was already handled by a previous check, but its handling is still pending.
+   * Pending entities are not counted for the limits of the rules. No entity is pending by default.
+   */
+  protected boolean isPending(Entity entity) {
+    return false;
+  }
+
+  /**
+   * @return whether the given entity is already in the handled state, these entities are picked first as the
+   * exceeded entities. No entity is handled by default.
+   */
+  protected boolean isHandled(Entity entity) {
+    return false;
+  }
+
   /** Calls the given {@code event}, using the plugin manager. */
   private <T extends Event> T callEvent(T event) {
     pluginManager.callEvent(event);
@@ -64,29 +115,140 @@ public abstract class AbstractEntityChecker implements EntityChecker {
   }
 
   @Override
-  public ResultType check(Entity entity, Rule rule) {
+  public void newCycle() {
+    coveredEntities.clear();
+  }
+
+  /** A check of an entity for a rule, before extracting the entities around it. */
+  private static final class PreparedCheck {
+    Rule rule;
+    RuleDescription ruleDescription;
+    @Nullable Set<UUID> covered;
+    // The result of the check, if it ended before extracting any entity
+    @Nullable ResultType result;
+  }
+
+  private PreparedCheck prepare(Entity entity, Rule rule) {
+    PreparedCheck preparedCheck = new PreparedCheck();
     RuleDescription ruleDescription = ruleDescriptionProvider.provide(rule);
     if (ruleDescription == null) {
-      return ResultType.RULE_NOT_FOUND;
+      preparedCheck.result = ResultType.RULE_NOT_FOUND;
+      return preparedCheck;
+    }
+
+    Set<UUID> covered = null;
+    if (clusterAware) {
+      covered = coveredEntities.computeIfAbsent(rule, r -> new HashSet<>());
+      if (covered.contains(entity.getUniqueId())) {
+        preparedCheck.result = ResultType.ALREADY_CHECKED;
+        return preparedCheck;
+      }
     }
 
     if (pluginManager != null) {
       EntityCheckEvent entityCheckEvent = this.callEvent(new EntityCheckEvent(entity, rule, ruleDescription));
       if (entityCheckEvent.isCancelled()) {
-        return ResultType.EVENT_CANCELLED;
+        preparedCheck.result = ResultType.EVENT_CANCELLED;
+        return preparedCheck;
       }
       rule = entityCheckEvent.getRule();
       ruleDescription = entityCheckEvent.getRuleDescription();
     }
+    preparedCheck.rule = rule;
+    preparedCheck.ruleDescription = ruleDescription;
+    preparedCheck.covered = covered;
+    return preparedCheck;
+  }
 
-    ImmutableSet<Entity> extractEntities =
-        entityExtractor.extractEntitiesInLocation(entity.getLocation(), rule.radius(), ruleDescription);
-    if (extractEntities.size() > rule.maxAmount()) {
-      ImmutableList<Entity> needsAnalyze =
-          extractEntities.asList().subList(rule.maxAmount(), extractEntities.size());
+  private ResultType complete(Entity entity, PreparedCheck preparedCheck, ImmutableSet<Entity> extractEntities) {
+    Rule rule = preparedCheck.rule;
+    if (preparedCheck.covered != null) {
+      preparedCheck.covered.add(entity.getUniqueId());
+      for (Entity extractEntity : extractEntities) {
+        preparedCheck.covered.add(extractEntity.getUniqueId());
+      }
+    }
+    ImmutableList<Entity> entities = extractEntities.asList();
+    if (entities.size() > rule.maxAmount()) {
+      if (Iterables.any(entities, this::isPending)) {
+        // The pending entities are already going to be handled, so they are not counted
+        entities = ImmutableList.copyOf(Iterables.filter(entities, e -> !isPending(e)));
+        if (entities.size() <= rule.maxAmount()) {
+          return analyzeEntitiesWithinLimit(rule, entity, entities);
+        }
+      }
+      if (Iterables.any(entities, this::isHandled)) {
+        // The same entities stay handled, instead of handling whichever entities come last this time
+        entities = ImmutableList.<Entity>builder()
+            .addAll(Iterables.filter(entities, e -> !isHandled(e)))
+            .addAll(Iterables.filter(entities, this::isHandled))
+            .build();
+      }
+      if (rule.maxAmount() > 0) {
+        analyzeEntitiesWithinLimit(rule, entity, entities.subList(0, rule.maxAmount()));
+      }
+      ImmutableList<Entity> needsAnalyze = entities.subList(rule.maxAmount(), entities.size());
       return analyzeExceededEntities(rule, entity, needsAnalyze);
     }
 
-    return ResultType.TOO_FEW_ENTITIES;
+    return analyzeEntitiesWithinLimit(rule, entity, entities);
+  }
+
+  @Override
+  public ResultType check(Entity entity, Rule rule) {
+    PreparedCheck preparedCheck = prepare(entity, rule);
+    if (preparedCheck.result != null) {
+      return preparedCheck.result;
+    }
+    return complete(entity, preparedCheck,
+        entityExtractor.extractEntitiesInLocation(
+            entity.getLocation(), preparedCheck.rule.radius(), preparedCheck.ruleDescription));
+  }
+
+  /** Same as checking each rule, but the entities of all the rules are extracted at once. */
+  @Override
+  public ImmutableList<ResultType> checkAll(Entity entity, ImmutableList<Rule> rules) {
+    if (rules.isEmpty()) {
+      // Most entities have no rules, nothing to extract for them
+      return ImmutableList.of();
+    }
+    if (rules.size() == 1) {
+      return ImmutableList.of(check(entity, rules.get(0)));
+    }
+    List<PreparedCheck> preparedChecks = new ArrayList<>(rules.size());
+    ImmutableList.Builder<Double> radii = ImmutableList.builder();
+    ImmutableList.Builder<RuleDescription> ruleDescriptions = ImmutableList.builder();
+    for (Rule rule : rules) {
+      PreparedCheck preparedCheck = prepare(entity, rule);
+      preparedChecks.add(preparedCheck);
+      if (preparedCheck.result == null) {
+        radii.add(preparedCheck.rule.radius());
+        ruleDescriptions.add(preparedCheck.ruleDescription);
+      }
+    }
+
+    ImmutableList<RuleDescription> pendingRuleDescriptions = ruleDescriptions.build();
+    // Every check may have ended already, then there is nothing to extract
+    ImmutableList<ImmutableSet<Entity>> extracted = pendingRuleDescriptions.isEmpty()
+        ? ImmutableList.of()
+        : entityExtractor.extractEntitiesInLocation(entity.getLocation(), radii.build(), pendingRuleDescriptions);
+    ImmutableList.Builder<ResultType> results = ImmutableList.builder();
+    boolean handledAny = false;
+    int extractedIndex = 0;
+    for (PreparedCheck preparedCheck : preparedChecks) {
+      if (preparedCheck.result != null) {
+        results.add(preparedCheck.result);
+        continue;
+      }
+      ImmutableSet<Entity> extractEntities = extracted.get(extractedIndex++);
+      if (handledAny) {
+        // The entities were extracted before the previous rules handled theirs, do not count the removed ones
+        extractEntities = ImmutableSet.copyOf(Iterables.filter(extractEntities, Entity::isValid));
+      }
+      ResultType result = complete(entity, preparedCheck, extractEntities);
+      handledAny |= result == ResultType.SUCCEED;
+      results.add(result);
+    }
+    return results.build();
   }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.util.ChunkKeys;
+import io.github.gonalez.zentitylimiter.util.Pair;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link EntityHandler} which queues the entities, and passes them to the {@code handlers} on the server thread
+ * a few every tick, so handling many entities at once does not lag the server. Every tick at most
+ * {@code maxEntitiesPerTick} entities are handled, or less if {@code maxNanosPerTick} is spent first.
+ *
+ * <p>The entities are grouped by chunk, and the chunks are handled in the order their first entity was queued.
+ * The entities which are no longer valid when their turn comes, because they died or were removed meanwhile, are
+ * skipped. Entities can be queued from any thread.
+ */
+public class BatchingEntityHandler implements EntityHandler, Runnable {
+  private final Plugin plugin;
+  private final ImmutableList<EntityHandler> handlers;
+
+  private final int maxEntitiesPerTick;
+  private final long maxNanosPerTick;
+
+  // The queued entities of each chunk by world and chunk key, guarded by this
+  private final Map<Pair<World, Long>, ArrayDeque<Entity>> queuedChunks = new LinkedHashMap<>();
+  private final Set<Entity> queuedEntities = new HashSet<>();
+
+  @Nullable
+  private BukkitTask task;
+
+  public BatchingEntityHandler(
+      Plugin plugin,
+      ImmutableList<EntityHandler> handlers,
+      int maxEntitiesPerTick,
+      long maxNanosPerTick) {
+    checkArgument(maxEntitiesPerTick > 0, "maxEntitiesPerTick must be positive");
+    checkArgument(maxNanosPerTick > 0, "maxNanosPerTick must be positive");
+    this.plugin = checkNotNull(plugin);
+    this.handlers = checkNotNull(handlers);
+    this.maxEntitiesPerTick = maxEntitiesPerTick;
+    this.maxNanosPerTick = maxNanosPerTick;
+  }
+
+  /** Starts handling the queued entities, every tick. */
+  public void start() {
+    if (task == null) {
+      task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+    }
+  }
+
+  /** Stops handling the queued entities, the entities still queued are discarded. */
+  public void shutdown() {
+    if (task != null) {
+      task.cancel();
+      task = null;
+    }
+    synchronized (this) {
+      queuedChunks.clear();
+      queuedEntities.clear();
+    }
+  }
+
+  @Override
+  public synchronized void handle(Entity entity) {
+    if (!queuedEntities.add(entity)) {
+      return;
+    }
+    Location location = entity.getLocation();
+    Pair<World, Long> chunkKey =
+        Pair.create(location.getWorld(), ChunkKeys.pack(location.getBlockX() >> 4, location.getBlockZ() >> 4));
+    queuedChunks.computeIfAbsent(chunkKey, key -> new ArrayDeque<>()).add(entity);
+  }
+
+  @Override
+  public synchronized boolean isPending(Entity entity) {
+    return queuedEntities.contains(entity);
+  }
+
+  /** @return the amount of entities waiting to be handled. */
+  public synchronized int getQueuedEntities() {
+    return queuedEntities.size();
+  }
+
+  @Override
+  public void run() {
+    long startNanos = System.nanoTime();
+    int handledEntities = 0;
+    // At least one entity is handled every tick, so the queue always makes progress
+    do {
+      Entity entity = poll();
+      if (entity == null) {
+        return;
+      }
+      if (!entity.isValid()) {
+        continue;
+      }
+      for (EntityHandler entityHandler : handlers) {
+        entityHandler.handle(entity);
+      }
+      handledEntities++;
+    } while (handledEntities < maxEntitiesPerTick && System.nanoTime() - startNanos < maxNanosPerTick);
+  }
+
+  @Nullable
+  private synchronized Entity poll() {
+    Iterator<ArrayDeque<Entity>> iterator = queuedChunks.values().iterator();
+    if (!iterator.hasNext()) {
+      return null;
+    }
+    ArrayDeque<Entity> chunkEntities = iterator.next();
+    Entity entity = chunkEntities.poll();
+    if (chunkEntities.isEmpty()) {
+      iterator.remove();
+    }
+    queuedEntities.remove(entity);
+    return entity;
+  }
+}
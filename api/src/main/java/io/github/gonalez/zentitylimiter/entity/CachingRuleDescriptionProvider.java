@@ -18,20 +18,38 @@ package io.github.gonalez.zentitylimiter.entity;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import io.github.gonalez.zentitylimiter.rule.Rule;
+import io.github.gonalez.zentitylimiter.rule.RuleCollection;
 
 import javax.annotation.Nullable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
-/** A RuleDescription provider which cache results. */
+/**
+ * A RuleDescription provider which cache results. If a {@code ruleCollection} is given, the cache is cleared
+ * every time the {@link RuleCollection#getVersion() version} of its rules changes.
+ */
 public class CachingRuleDescriptionProvider implements RuleDescription.Provider {
   private final ConcurrentHashMap<Rule, RuleDescription> ruleDescriptionCache = new ConcurrentHashMap<>();
 
   private final Function<Rule, RuleDescription> computeRuleDescriptionFunction;
 
+  @Nullable
+  private final RuleCollection ruleCollection;
+  private volatile long cachedVersion;
+
   public CachingRuleDescriptionProvider(
       Function<Rule, RuleDescription> computeRuleDescriptionFunction) {
+    this(computeRuleDescriptionFunction, null);
+  }
+
+  public CachingRuleDescriptionProvider(
+      Function<Rule, RuleDescription> computeRuleDescriptionFunction,
+      @Nullable RuleCollection ruleCollection) {
     this.computeRuleDescriptionFunction = checkNotNull(computeRuleDescriptionFunction);
+    this.ruleCollection = ruleCollection;
+    if (ruleCollection != null) {
+      cachedVersion = ruleCollection.getVersion();
+    }
   }
 
 
@@ -41,7 +59,14 @@ public class CachingRuleDescriptionProvider implements RuleDescription.Provider
     if (rule == null) {
       return null;
     }
-    ruleDescriptionCache.computeIfAbsent(rule, computeRuleDescriptionFunction);
-    return ruleDescriptionCache.get(rule);
+    if (ruleCollection != null) {
+      long version = ruleCollection.getVersion();
+      if (version != cachedVersion) {
+        // Descriptions of the old rules are not needed anymore
+        ruleDescriptionCache.clear();
+        cachedVersion = version;
+      }
+    }
+    return ruleDescriptionCache.computeIfAbsent(rule, computeRuleDescriptionFunction);
   }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.github.gonalez.zentitylimiter.util.ChunkKeys;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Adds the entities of the loaded chunks of some worlds to an {@link EntityCheckingTask}. Instead of adding all
+ * the entities at once, the loaded chunks are walked with a cursor that advances a few chunks every tick, so a
+ * full pass over the worlds is spread over {@code intervalTicks}.
+ *
+ * <p>The chunks of a pass are the chunks loaded when the pass starts, chunks unloaded in the middle of the
+ * pass are skipped. Each pass starts a {@link EntityCheckingTask#newCycle() new cycle} of the task, so the
+ * entities of a pass are never mistaken for the entities of the previous one.
+ */
+public class ChunkSweepingEntityFeeder implements Runnable {
+  private final Plugin plugin;
+  private final Supplier<? extends Iterable<World>> worldsSupplier;
+  private final EntityCheckingTask entityCheckingTask;
+
+  private final long intervalTicks;
+  private final int minChunksPerTick;
+
+  // The worlds of the current pass, and for each world the keys of its loaded chunks
+  private final List<World> passWorlds = new ArrayList<>();
+  private final List<long[]> passChunks = new ArrayList<>();
+
+  private int worldCursor;
+  private int chunkCursor;
+
+  private int chunksPerTick;
+  private long ticks;
+  private long nextPassTick;
+
+  @Nullable
+  private BukkitTask task;
+
+  public ChunkSweepingEntityFeeder(
+      Plugin plugin,
+      Supplier<? extends Iterable<World>> worldsSupplier,
+      EntityCheckingTask entityCheckingTask,
+      long intervalTicks, int minChunksPerTick) {
+    checkArgument(intervalTicks > 0, "intervalTicks must be positive");
+    checkArgument(minChunksPerTick > 0, "minChunksPerTick must be positive");
+    this.plugin = checkNotNull(plugin);
+    this.worldsSupplier = checkNotNull(worldsSupplier);
+    this.entityCheckingTask = checkNotNull(entityCheckingTask);
+    this.intervalTicks = intervalTicks;
+    this.minChunksPerTick = minChunksPerTick;
+  }
+
+  /** Starts sweeping the worlds, every tick. */
+  public void start() {
+    if (task == null) {
+      task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+    }
+  }
+
+  /** Stops sweeping the worlds, the current pass is discarded. */
+  public void shutdown() {
+    if (task != null) {
+      task.cancel();
+      task = null;
+    }
+    passWorlds.clear();
+    passChunks.clear();
+  }
+
+  @Override
+  public void run() {
+    ticks++;
+    skipSweptWorlds();
+    if (worldCursor >= passWorlds.size()) {
+      if (ticks < nextPassTick) {
+        return;
+      }
+      startPass();
+    }
+
+    int remainingChunks = chunksPerTick;
+    while (remainingChunks > 0 && worldCursor < passWorlds.size()) {
+      World world = passWorlds.get(worldCursor);
+      long[] chunkKeys = passChunks.get(worldCursor);
+      if (chunkCursor >= chunkKeys.length
+          || plugin.getServer().getWorld(world.getUID()) != world) {
+        worldCursor++;
+        chunkCursor = 0;
+        continue;
+      }
+
+      long chunkKey = chunkKeys[chunkCursor++];
+      remainingChunks--;
+
+      int chunkX = ChunkKeys.chunkX(chunkKey), chunkZ = ChunkKeys.chunkZ(chunkKey);
+      if (!world.isChunkLoaded(chunkX, chunkZ)) {
+        continue;
+      }
+      for (Entity entity : world.getChunkAt(chunkX, chunkZ).getEntities()) {
+        entityCheckingTask.addEntityForChecking(entity);
+      }
+    }
+  }
+
+  // Moves the cursor past the worlds without chunks left, so a pass ends as soon as its last chunk is swept
+  private void skipSweptWorlds() {
+    while (worldCursor < passWorlds.size() && chunkCursor >= passChunks.get(worldCursor).length) {
+      worldCursor++;
+      chunkCursor = 0;
+    }
+  }
+
+  private void startPass() {
+    entityCheckingTask.newCycle();
+    passWorlds.clear();
+    passChunks.clear();
+    worldCursor = 0;
+    chunkCursor = 0;
+
+    long totalChunks = 0;
+    for (World world : worldsSupplier.get()) {
+      Chunk[] loadedChunks = world.getLoadedChunks();
+      long[] chunkKeys = new long[loadedChunks.length];
+      for (int i = 0; i < loadedChunks.length; i++) {
+        chunkKeys[i] = ChunkKeys.pack(loadedChunks[i].getX(), loadedChunks[i].getZ());
+      }
+      passWorlds.add(world);
+      passChunks.add(chunkKeys);
+      totalChunks += chunkKeys.length;
+    }
+
+    // Enough chunks every tick to finish the pass within the interval
+    chunksPerTick = (int) Math.max(minChunksPerTick, (totalChunks + intervalTicks - 1) / intervalTicks);
+    nextPassTick = ticks + intervalTicks;
+  }
+}
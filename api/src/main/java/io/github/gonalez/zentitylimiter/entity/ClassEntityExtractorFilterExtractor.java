@@ -18,24 +18,37 @@ package io.github.gonalez.zentitylimiter.entity;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
 import io.github.gonalez.zentitylimiter.registry.ObjectRegistry;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Add the filters of the rule description to the entity if the filter {@link EntityExtractorFilter#filterType()}
  * is assignable to the {@link EntityType#getEntityClass() entity class}.
+ *
+ * <p>{@link #compileFilters Compiled filters} are cached per rule description and {@link EntityType}, so the
+ * class returned by {@code classFunction} must only depend on the type of the entity.
  */
 public class ClassEntityExtractorFilterExtractor implements EntityExtractorFilterExtractor {
   private final HashMap<Class<?>, Set<Class<?>>> allowedTypes = new HashMap<>();
   private final HashMap<Class<?>, Set<Class<?>>> nonAllowedTypes = new HashMap<>();
 
+  // The compiled filters of each rule description, indexed by entity type ordinal
+  private final ConcurrentMap<RuleDescription, AtomicReferenceArray<Predicate<Entity>>> compiledFilters =
+      new MapMaker().weakKeys().makeMap();
+
   private final Function<Entity, Class<?>> classFunction;
 
   public ClassEntityExtractorFilterExtractor(
@@ -60,15 +73,59 @@ public class ClassEntityExtractorFilterExtractor implements EntityExtractorFilte
       if (nonAllowedClasses.contains(filterType)) {
         continue;
       }
-      if (!allowedClasses.contains(filterType)) {
-        if (filterType.isAssignableFrom(findClass)) {
-          allowedClasses.add(findClass);
-          builder.put(entry);
-        } else {
-          nonAllowedClasses.add(filterType);
-        }
+      if (allowedClasses.contains(filterType) || filterType.isAssignableFrom(findClass)) {
+        allowedClasses.add(filterType);
+        builder.put(entry);
+      } else {
+        nonAllowedClasses.add(filterType);
       }
     }
     return builder.build();
   }
+
+  @Override
+  public Predicate<Entity> compileFilters(RuleDescription ruleDescription, Entity entity) {
+    EntityType entityType = entity.getType();
+    if (entityType == null) {
+      return EntityExtractorFilterExtractor.super.compileFilters(ruleDescription, entity);
+    }
+    AtomicReferenceArray<Predicate<Entity>> ruleFilters =
+        compiledFilters.computeIfAbsent(
+            ruleDescription, r -> new AtomicReferenceArray<>(EntityType.values().length));
+    Predicate<Entity> predicate = ruleFilters.get(entityType.ordinal());
+    if (predicate == null) {
+      predicate = compile(extractFilters(ruleDescription, entity));
+      ruleFilters.set(entityType.ordinal(), predicate);
+    }
+    return predicate;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Predicate<Entity> compile(ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> filters) {
+    List<Predicate<Entity>> predicates = new ArrayList<>(filters.size());
+    for (Map.Entry<EntityExtractorFilter<?>, ObjectRegistry> filterEntry : filters.entrySet()) {
+      EntityExtractorFilter entityExtractorFilter = filterEntry.getKey();
+      predicates.add(entityExtractorFilter.compile(filterEntry.getValue()));
+    }
+    return new CompiledFilters(predicates.toArray(new Predicate[0]));
+  }
+
+  /** The compiled filters of a rule description for an entity type, which are all checked in order. */
+  private static final class CompiledFilters implements Predicate<Entity> {
+    private final Predicate<Entity>[] filters;
+
+    CompiledFilters(Predicate<Entity>[] filters) {
+      this.filters = filters;
+    }
+
+    @Override
+    public boolean test(Entity entity) {
+      for (Predicate<Entity> filter : filters) {
+        if (!filter.test(entity)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import org.bukkit.entity.Entity;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A queue of entities which accepts each entity only once per cycle, no matter how many times it is
+ * {@link #offer offered}. Entities are identified by their {@link Entity#getUniqueId() unique id}.
+ *
+ * <p>This class is not thread safe.
+ */
+public class DeduplicatingEntityQueue {
+  private final ArrayDeque<Entity> entities = new ArrayDeque<>();
+  private final Set<UUID> cycleIds = new HashSet<>();
+
+  /** @return {@code true} if the entity was added, or {@code false} if it was already added this cycle. */
+  public boolean offer(Entity entity) {
+    if (!cycleIds.add(entity.getUniqueId())) {
+      return false;
+    }
+    entities.add(entity);
+    return true;
+  }
+
+  /** @return the next entity of this queue, or {@code null} if the queue is empty. */
+  @Nullable
+  public Entity poll() {
+    return entities.poll();
+  }
+
+  public boolean isEmpty() {
+    return entities.isEmpty();
+  }
+
+  public int size() {
+    return entities.size();
+  }
+
+  /** Starts a new cycle, the entities offered in the previous cycles can be added again. */
+  public void newCycle() {
+    cycleIds.clear();
+    for (Entity entity : entities) {
+      cycleIds.add(entity.getUniqueId());
+    }
+  }
+
+  /** Removes all entities from this queue, and starts a new cycle. */
+  public void clear() {
+    entities.clear();
+    cycleIds.clear();
+  }
+}
@@ -24,6 +24,7 @@ import io.github.gonalez.zentitylimiter.registry.ObjectRegistry;
 import io.github.gonalez.zentitylimiter.rule.Rule;
 import org.bukkit.entity.EntityType;
 
+import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -33,6 +34,9 @@ public class DefaultRuleDescription implements RuleDescription {
   private final HashSet<RuleDescription> ruleDescriptions = new HashSet<>();
 
   private final HashMap<EntityExtractorFilter<?>, ObjectRegistry> filters = new HashMap<>();
+  // Copy of the filters, until they change
+  @Nullable
+  private ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> filtersCopy;
 
   private final Rule rule;
 
@@ -57,6 +61,7 @@ public class DefaultRuleDescription implements RuleDescription {
     ObjectRegistry objectRegistry =
         ObjectRegistry.of(filter.getName(), (Class<? super Object>) getConvertedType(value.getClass()), value);
     filters.put(filter, objectRegistry);
+    filtersCopy = null;
   }
 
   @Override
@@ -66,13 +71,18 @@ public class DefaultRuleDescription implements RuleDescription {
 
   @Override
   public ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> getFilters() {
-    return ImmutableMap.copyOf(filters);
+    ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> filtersCopy = this.filtersCopy;
+    if (filtersCopy == null) {
+      this.filtersCopy = filtersCopy = ImmutableMap.copyOf(filters);
+    }
+    return filtersCopy;
   }
 
   @Override
   public void mergeWith(RuleDescription ruleDescription) {
     if (this.ruleDescriptions.add(ruleDescription)) {
       filters.putAll(ruleDescription.getFilters());
+      filtersCopy = null;
     }
   }
 
@@ -15,6 +15,7 @@
  */
 package io.github.gonalez.zentitylimiter.entity;
 
+import com.google.common.collect.ImmutableList;
 import io.github.gonalez.zentitylimiter.rule.Rule;
 import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
@@ -35,14 +36,33 @@ public interface EntityChecker {
     EVENT_CANCELLED,
     // The number of entities found is less than the limit set by the rule
     TOO_FEW_ENTITIES,
+    // The entity was already covered by another check of the same rule in this cycle
+    ALREADY_CHECKED,
   }
 
   /** Checks the given entity for the given rule. */
   ResultType check(Entity entity, @Nullable Rule rule);
 
+  /**
+   * Checks the given entity for each of the given rules, by default each rule is {@link #check checked}
+   * separately. Implementations may share the work between the rules.
+   *
+   * @return the result of each rule, in the same order as {@code rules}
+   */
+  default ImmutableList<ResultType> checkAll(Entity entity, ImmutableList<Rule> rules) {
+    ImmutableList.Builder<ResultType> builder = ImmutableList.builder();
+    for (Rule rule : rules) {
+      builder.add(check(entity, rule));
+    }
+    return builder.build();
+  }
+
   /** Initializes this checker for the given plugin (optional). */
   default void init(Plugin plugin) {}
 
+  /** Called by {@link EntityCheckingTask}s when a new checking cycle starts (optional). */
+  default void newCycle() {}
+
   /** @return {@code true} if this checker has been {@link #init initialized}. */
   default boolean isInitialized() {
     return false;
@@ -47,4 +47,11 @@ public interface EntityCheckingTask {
 
   /** Adds a new entity checker. */
   void addEntityChecker(EntityChecker entityChecker);
+
+  /**
+   * Starts a new checking cycle, the entities checked in the previous cycle can be added again and the
+   * {@link EntityChecker#newCycle() checkers} start a new cycle too. Called by whoever adds the entities, when it
+   * starts adding them again, see {@link ChunkSweepingEntityFeeder}. Does nothing by default.
+   */
+  default void newCycle() {}
 }
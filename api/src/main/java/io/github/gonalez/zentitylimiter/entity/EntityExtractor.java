@@ -15,14 +15,61 @@
  */
 package io.github.gonalez.zentitylimiter.entity;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.bukkit.Location;
 import org.bukkit.entity.Entity;
 
+import java.util.function.Predicate;
+
 /** Responsible for extracting a set of entities at a location and radius. */
 public interface EntityExtractor {
 
   /** Extracts the entities found at the given location and radius. */
   ImmutableSet<Entity> extractEntitiesInLocation(
       Location location, double radius, RuleDescription ruleDescription);
+
+  /**
+   * Extracts the entities found at the given location for each rule description, with the radius at the same
+   * index of {@code radii}. By default each rule description is extracted separately, implementations may
+   * share the work between them.
+   */
+  default ImmutableList<ImmutableSet<Entity>> extractEntitiesInLocation(
+      Location location, ImmutableList<Double> radii, ImmutableList<RuleDescription> ruleDescriptions) {
+    ImmutableList.Builder<ImmutableSet<Entity>> builder = ImmutableList.builder();
+    for (int i = 0; i < ruleDescriptions.size(); i++) {
+      builder.add(extractEntitiesInLocation(location, radii.get(i), ruleDescriptions.get(i)));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Counts the entities found at the given location and radius, but stops as soon as {@code limit} entities are
+   * found, for the checks which only need to know whether there are more entities than a limit.
+   *
+   * @return the amount of entities found, at most {@code limit}
+   */
+  default int countUpTo(Location location, double radius, RuleDescription ruleDescription, int limit) {
+    return countUpTo(location, radius, ruleDescription, limit, entity -> true);
+  }
+
+  /**
+   * Same as {@link #countUpTo(Location, double, RuleDescription, int)}, but only the entities that match
+   * {@code counted} are counted. By default the entities are extracted and then counted, implementations should
+   * stop extracting once the limit is reached.
+   */
+  default int countUpTo(
+      Location location, double radius, RuleDescription ruleDescription,
+      int limit, Predicate<? super Entity> counted) {
+    int count = 0;
+    if (limit <= 0) {
+      return count;
+    }
+    for (Entity entity : extractEntitiesInLocation(location, radius, ruleDescription)) {
+      if (counted.test(entity) && ++count >= limit) {
+        break;
+      }
+    }
+    return count;
+  }
 }
@@ -15,8 +15,11 @@
  */
 package io.github.gonalez.zentitylimiter.entity;
 
+import io.github.gonalez.zentitylimiter.entity.snapshot.EntitySnapshot;
 import io.github.gonalez.zentitylimiter.registry.ObjectRegistry;
 
+import java.util.function.Predicate;
+
 /** Restricts which entities can be extracted. */
 public abstract class EntityExtractorFilter<T> {
   protected EntityExtractorFilter() {}
@@ -29,4 +32,25 @@ public abstract class EntityExtractorFilter<T> {
 
   /** @return {@code true} if the entity can be extracted. */
   public abstract boolean allowed(ObjectRegistry objectRegistry, T type);
+
+  /**
+   * Compiles this filter with the values of {@code objectRegistry}, so they are not looked up again for
+   * each filtered thing. The returned predicate is the same as {@link #allowed} with the given registry.
+   */
+  public Predicate<T> compile(ObjectRegistry objectRegistry) {
+    return type -> allowed(objectRegistry, type);
+  }
+
+  /** @return {@code true} if this filter can be applied to {@link EntitySnapshot}s. */
+  public boolean supportsSnapshots() {
+    return false;
+  }
+
+  /**
+   * @return {@code true} if the entity of the snapshot can be extracted. Filters that {@link #supportsSnapshots()
+   * support snapshots} must override this method, by default no snapshot is allowed.
+   */
+  public boolean allowedSnapshot(ObjectRegistry objectRegistry, EntitySnapshot snapshot) {
+    return false;
+  }
 }
\ No newline at end of file
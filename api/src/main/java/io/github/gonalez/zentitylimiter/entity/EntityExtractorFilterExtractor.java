@@ -19,8 +19,27 @@ import com.google.common.collect.ImmutableMap;
 import io.github.gonalez.zentitylimiter.registry.ObjectRegistry;
 import org.bukkit.entity.Entity;
 
+import java.util.Map;
+import java.util.function.Predicate;
+
 /** Responsible for extracting the proper filters that can be executed for an entity from a {@link RuleDescription}. */
 public interface EntityExtractorFilterExtractor {
   ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> extractFilters(
       RuleDescription ruleDescription, Entity entity);
+
+  /**
+   * @return a predicate which is {@code true} if an entity passes all the filters {@link #extractFilters extracted}
+   * for {@code entity}. By default the filters are extracted and compiled on every call, implementations may
+   * cache the result.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  default Predicate<Entity> compileFilters(RuleDescription ruleDescription, Entity entity) {
+    Predicate<Entity> predicate = e -> true;
+    for (Map.Entry<EntityExtractorFilter<?>, ObjectRegistry> filterEntry :
+        extractFilters(ruleDescription, entity).entrySet()) {
+      EntityExtractorFilter entityExtractorFilter = filterEntry.getKey();
+      predicate = predicate.and(entityExtractorFilter.compile(filterEntry.getValue()));
+    }
+    return predicate;
+  }
 }
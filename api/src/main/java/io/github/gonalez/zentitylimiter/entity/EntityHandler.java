@@ -15,6 +15,8 @@
  */
 package io.github.gonalez.zentitylimiter.entity;
 
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.rule.Rule;
 import org.bukkit.entity.Entity;
 
 /** Interface for handling entities. */
@@ -22,4 +24,37 @@ public interface EntityHandler {
 
   /** Handles the given entity. */
   void handle(Entity entity);
+
+  /**
+   * Handles the entities that exceeded the limit of the {@code rule} when checking the {@code checked} entity. By
+   * default each entity is {@link #handle handled} separately.
+   */
+  default void handleAll(Rule rule, Entity checked, ImmutableList<Entity> entities) {
+    for (Entity entity : entities) {
+      handle(entity);
+    }
+  }
+
+  /**
+   * Called when checking the {@code checked} entity found the {@code entities} around it within the limit of the
+   * {@code rule}, so a handler can undo what it did to them. Does nothing by default.
+   */
+  default void handleWithinLimit(Rule rule, Entity checked, ImmutableList<Entity> entities) {}
+
+  /**
+   * @return whether the given entity was passed to this handler, but is still waiting to be handled, for example
+   * because the handler queues the entities.
+   */
+  default boolean isPending(Entity entity) {
+    return false;
+  }
+
+  /**
+   * @return whether the given entity is currently in the state this handler puts the handled entities in, for example
+   * a frozen entity. These entities are picked first as the exceeded entities of a rule, so the same entities stay
+   * handled across checks. No entity is handled by default.
+   */
+  default boolean isHandled(Entity entity) {
+    return false;
+  }
 }
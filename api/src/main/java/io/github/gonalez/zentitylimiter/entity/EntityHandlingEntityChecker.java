@@ -29,17 +29,51 @@ public class EntityHandlingEntityChecker extends AbstractEntityChecker {
       RuleDescription.Provider ruleDescriptionProvider,
       EntityExtractor entityExtractor,
       ImmutableList<EntityHandler> handlers) {
-    super(ruleDescriptionProvider, entityExtractor);
+    this(ruleDescriptionProvider, entityExtractor, handlers, false);
+  }
+
+  public EntityHandlingEntityChecker(
+      RuleDescription.Provider ruleDescriptionProvider,
+      EntityExtractor entityExtractor,
+      ImmutableList<EntityHandler> handlers,
+      boolean clusterAware) {
+    super(ruleDescriptionProvider, entityExtractor, clusterAware);
     this.handlers = checkNotNull(handlers);
   }
 
   @Override
-  protected ResultType analyzeExceededEntities(Rule rule, Entity checked, ImmutableList<Entity> entities)  {
-    for (Entity entity : entities) {
-      for (EntityHandler entityHandler : handlers) {
-        entityHandler.handle(entity);
+  protected boolean isPending(Entity entity) {
+    for (EntityHandler entityHandler : handlers) {
+      if (entityHandler.isPending(entity)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  protected boolean isHandled(Entity entity) {
+    for (EntityHandler entityHandler : handlers) {
+      if (entityHandler.isHandled(entity)) {
+        return true;
       }
     }
+    return false;
+  }
+
+  @Override
+  protected ResultType analyzeExceededEntities(Rule rule, Entity checked, ImmutableList<Entity> entities)  {
+    for (EntityHandler entityHandler : handlers) {
+      entityHandler.handleAll(rule, checked, entities);
+    }
     return ResultType.SUCCEED;
   }
+
+  @Override
+  protected ResultType analyzeEntitiesWithinLimit(Rule rule, Entity checked, ImmutableList<Entity> entities) {
+    for (EntityHandler entityHandler : handlers) {
+      entityHandler.handleWithinLimit(rule, checked, entities);
+    }
+    return super.analyzeEntitiesWithinLimit(rule, checked, entities);
+  }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.entity.index.ChunkEntityCounter;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+
+import javax.annotation.Nullable;
+
+/**
+ * Decides whether an entity which is about to spawn would exceed the limits of its rules, so the spawn can be
+ * cancelled instead of handling the entity once it has spawned. The entity is not in the world yet, so it would
+ * exceed a limit if the entities around its location already reach it. The entities are
+ * {@link EntityExtractor#countUpTo counted} only up to the limit.
+ *
+ * <p>The per chunk limits are only applied if a {@link ChunkEntityCounter} is given. The entities pending to be
+ * handled by the {@code handlers} are not counted, same as {@link AbstractEntityChecker}.
+ */
+public class EntitySpawnGate {
+  private final RuleDescription.Provider ruleDescriptionProvider;
+  private final EntityExtractor entityExtractor;
+  @Nullable private final ChunkEntityCounter chunkEntityCounter;
+  private final ImmutableList<EntityHandler> handlers;
+
+  public EntitySpawnGate(
+      RuleDescription.Provider ruleDescriptionProvider,
+      EntityExtractor entityExtractor,
+      @Nullable ChunkEntityCounter chunkEntityCounter,
+      ImmutableList<EntityHandler> handlers) {
+    this.ruleDescriptionProvider = checkNotNull(ruleDescriptionProvider);
+    this.entityExtractor = checkNotNull(entityExtractor);
+    this.chunkEntityCounter = chunkEntityCounter;
+    this.handlers = checkNotNull(handlers);
+  }
+
+  /** @return whether spawning the given entity would exceed the limit of any of the given rules. */
+  public boolean wouldExceed(Entity entity, ImmutableList<Rule> rules) {
+    for (Rule rule : rules) {
+      if (wouldExceed(entity, rule)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** @return whether spawning the given entity would exceed the limit of the given rule. */
+  public boolean wouldExceed(Entity entity, Rule rule) {
+    if (chunkEntityCounter != null
+        && rule.maxAmountPerChunk() >= 0
+        && chunkEntityCounter.count(entity.getLocation(), entity.getType()) >= rule.maxAmountPerChunk()
+        // The counter includes the pending entities, so the chunk is only counted again once it is at the limit
+        && countInChunk(entity) >= rule.maxAmountPerChunk()) {
+      return true;
+    }
+    RuleDescription ruleDescription = ruleDescriptionProvider.provide(rule);
+    if (ruleDescription == null) {
+      return false;
+    }
+    // Stops counting once the limit is reached
+    return entityExtractor.countUpTo(
+        entity.getLocation(), rule.radius(), ruleDescription,
+        rule.maxAmount(), extracted -> extracted != entity && !isPending(extracted)) >= rule.maxAmount();
+  }
+
+  /** @return the amount of entities of the type of the given entity in its chunk, but the pending entities. */
+  private int countInChunk(Entity entity) {
+    int count = 0;
+    Location location = entity.getLocation();
+    for (Entity chunkEntity : location.getWorld().getChunkAt(location).getEntities()) {
+      if (chunkEntity != entity && chunkEntity.getType() == entity.getType() && !isPending(chunkEntity)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private boolean isPending(Entity entity) {
+    for (EntityHandler entityHandler : handlers) {
+      if (entityHandler.isPending(entity)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -15,8 +15,11 @@
  */
 package io.github.gonalez.zentitylimiter.entity;
 
+import io.github.gonalez.zentitylimiter.entity.snapshot.EntitySnapshot;
 import io.github.gonalez.zentitylimiter.registry.ObjectRegistry;
 
+import java.util.function.Predicate;
+
 /**
  * {@link EntityExtractorFilter} that has an extra thing to check for allowed (@code V), useful if the
  * subclass only needs a single value from the {@code objectRegistry} to do the necessary 'comparisons'.
@@ -26,6 +29,14 @@ public abstract class ExtraEntityExtractorFilter<V, T> extends EntityExtractorFi
 
   protected abstract Class<V> valueType();
 
+  /**
+   * Same as {@link #doAllowed} but for snapshots, must be overridden by the filters that
+   * {@link #supportsSnapshots() support snapshots}. By default no snapshot is allowed.
+   */
+  protected boolean doAllowedSnapshot(V value, EntitySnapshot snapshot) {
+    return false;
+  }
+
   @Override
   public boolean allowed(ObjectRegistry objectRegistry, T type) {
     V eval = objectRegistry.get(getName(), valueType());
@@ -34,4 +45,25 @@ public abstract class ExtraEntityExtractorFilter<V, T> extends EntityExtractorFi
     }
     return false;
   }
+
+  @Override
+  public Predicate<T> compile(ObjectRegistry objectRegistry) {
+    V eval = objectRegistry.get(getName(), valueType());
+    if (eval != null) {
+      return type -> doAllowed(eval, type);
+    }
+    return type -> false;
+  }
+
+  @Override
+  public boolean allowedSnapshot(ObjectRegistry objectRegistry, EntitySnapshot snapshot) {
+    if (!supportsSnapshots()) {
+      return false;
+    }
+    V eval = objectRegistry.get(getName(), valueType());
+    if (eval != null) {
+      return doAllowedSnapshot(eval, snapshot);
+    }
+    return false;
+  }
 }
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An {@link EntityHandler} which freezes the exceeded living entities instead of removing them: their AI is disabled,
+ * and so is their gravity, collision and sound when the server supports it. Frozen entities cost far less to tick,
+ * and are thawed once a check finds them {@link #handleWithinLimit within the limit} of every rule they were frozen
+ * for, at most {@code maxThawedPerCheck} at once.
+ *
+ * <p>Frozen entities are {@link #isHandled handled}, so they are picked first as the exceeded entities of a rule and
+ * the same entities stay frozen, while the frozen entities allowed by the limit are thawed.
+ *
+ * <p>The frozen state is saved with the entities, so the entities that are not loaded when {@link #thawAll thawing
+ * all} would stay frozen forever. These are {@link #getUnloadedFrozenEntities remembered}, and should be persisted
+ * and {@link #thawIfLeftFrozen thawed} once they are loaded again.
+ *
+ * <p>The entities frozen without a rule, by {@link #handle}, are thawed by any rule. This handler must be used from
+ * the server thread.
+ */
+public class FreezingEntityHandler implements EntityHandler {
+  /** A setter used to freeze an entity, which may not exist in this server version. */
+  private static final class Toggle {
+    final Method setter;
+    final boolean frozenValue;
+
+    Toggle(Method setter, boolean frozenValue) {
+      this.setter = setter;
+      this.frozenValue = frozenValue;
+    }
+  }
+
+  private static final ImmutableList<Toggle> TOGGLES = findToggles();
+
+  private final int maxThawedPerCheck;
+
+  // The frozen entities of each rule, the entities frozen without a rule are under the null rule
+  private final Map<Rule, Set<UUID>> frozenEntitiesByRule = new HashMap<>();
+  private final Map<UUID, LivingEntity> frozenEntities = new HashMap<>();
+  // The entities left frozen while they were not loaded, to thaw once they are loaded again
+  private final Set<UUID> unloadedFrozenEntities = new HashSet<>();
+
+  public FreezingEntityHandler(int maxThawedPerCheck) {
+    checkArgument(maxThawedPerCheck > 0, "maxThawedPerCheck must be positive");
+    this.maxThawedPerCheck = maxThawedPerCheck;
+  }
+
+  private static ImmutableList<Toggle> findToggles() {
+    ImmutableList.Builder<Toggle> toggles = ImmutableList.builder();
+    addToggle(toggles, LivingEntity.class, "setAI", false);
+    addToggle(toggles, LivingEntity.class, "setCollidable", false);
+    addToggle(toggles, Entity.class, "setGravity", false);
+    addToggle(toggles, Entity.class, "setSilent", true);
+    return toggles.build();
+  }
+
+  private static void addToggle(
+      ImmutableList.Builder<Toggle> toggles, Class<?> type, String name, boolean frozenValue) {
+    try {
+      toggles.add(new Toggle(type.getMethod(name, boolean.class), frozenValue));
+    } catch (NoSuchMethodException e) {
+      // Not available in this server version
+    }
+  }
+
+  /** @return whether entities can be frozen in this server version, which requires disabling their AI. */
+  public static boolean isSupported() {
+    for (Toggle toggle : TOGGLES) {
+      if (toggle.setter.getName().equals("setAI")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void handle(Entity entity) {
+    freeze(null, entity);
+  }
+
+  @Override
+  public void handleAll(Rule rule, Entity checked, ImmutableList<Entity> entities) {
+    for (Entity entity : entities) {
+      freeze(rule, entity);
+    }
+  }
+
+  @Override
+  public void handleWithinLimit(Rule rule, Entity checked, ImmutableList<Entity> entities) {
+    if (frozenEntities.isEmpty()) {
+      return;
+    }
+    Set<UUID> frozenOfRule = frozenEntitiesByRule.get(rule);
+    Set<UUID> frozenWithoutRule = frozenEntitiesByRule.get(null);
+    int thawed = 0;
+    for (Entity entity : entities) {
+      UUID uniqueId = entity.getUniqueId();
+      boolean removed = frozenOfRule != null && frozenOfRule.remove(uniqueId);
+      removed |= frozenWithoutRule != null && frozenWithoutRule.remove(uniqueId);
+      if (removed && !isFrozenByAnyRule(uniqueId)) {
+        frozenEntities.remove(uniqueId);
+        // The entity may have been loaded again since it was frozen
+        if (entity instanceof LivingEntity) {
+          setFrozen((LivingEntity) entity, false);
+        }
+        if (++thawed >= maxThawedPerCheck) {
+          break;
+        }
+      }
+    }
+    frozenEntitiesByRule.values().removeIf(Set::isEmpty);
+  }
+
+  private void freeze(@Nullable Rule rule, Entity entity) {
+    if (!(entity instanceof LivingEntity) || entity instanceof Player || !entity.isValid()) {
+      return;
+    }
+    unloadedFrozenEntities.remove(entity.getUniqueId());
+    frozenEntitiesByRule.computeIfAbsent(rule, r -> new HashSet<>()).add(entity.getUniqueId());
+    if (frozenEntities.put(entity.getUniqueId(), (LivingEntity) entity) == null) {
+      setFrozen((LivingEntity) entity, true);
+    }
+  }
+
+  private boolean isFrozenByAnyRule(UUID uniqueId) {
+    for (Set<UUID> frozenOfRule : frozenEntitiesByRule.values()) {
+      if (frozenOfRule.contains(uniqueId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isHandled(Entity entity) {
+    return isFrozen(entity);
+  }
+
+  /** @return whether the given entity is frozen by this handler. */
+  public boolean isFrozen(Entity entity) {
+    return frozenEntities.containsKey(entity.getUniqueId());
+  }
+
+  /** @return the amount of entities frozen by this handler. */
+  public int getFrozenEntities() {
+    return frozenEntities.size();
+  }
+
+  /** Stops tracking the given entity, without thawing it. This must be called when a frozen entity dies. */
+  public void forget(Entity entity) {
+    UUID uniqueId = entity.getUniqueId();
+    unloadedFrozenEntities.remove(uniqueId);
+    if (frozenEntities.remove(uniqueId) != null) {
+      for (Iterator<Set<UUID>> iterator = frozenEntitiesByRule.values().iterator(); iterator.hasNext(); ) {
+        Set<UUID> frozenOfRule = iterator.next();
+        if (frozenOfRule.remove(uniqueId) && frozenOfRule.isEmpty()) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Thaws all the frozen entities which are still loaded, for example when the plugin is disabled. The entities
+   * which are not loaded are {@link #getUnloadedFrozenEntities remembered} instead.
+   */
+  public void thawAll() {
+    for (Map.Entry<UUID, LivingEntity> frozenEntry : frozenEntities.entrySet()) {
+      if (frozenEntry.getValue().isValid()) {
+        setFrozen(frozenEntry.getValue(), false);
+      } else {
+        unloadedFrozenEntities.add(frozenEntry.getKey());
+      }
+    }
+    frozenEntities.clear();
+    frozenEntitiesByRule.clear();
+  }
+
+  /** @return the entities left frozen by {@link #thawAll} because they were not loaded. */
+  public ImmutableSet<UUID> getUnloadedFrozenEntities() {
+    return ImmutableSet.copyOf(unloadedFrozenEntities);
+  }
+
+  /** Adds entities left frozen while they were not loaded, for example by a previous {@link #thawAll}. */
+  public void addUnloadedFrozenEntities(Iterable<UUID> uniqueIds) {
+    for (UUID uniqueId : uniqueIds) {
+      unloadedFrozenEntities.add(uniqueId);
+    }
+  }
+
+  /**
+   * Thaws the given entity if it was left frozen while it was not loaded, this must be called when entities are
+   * loaded.
+   *
+   * @return whether the entity was thawed
+   */
+  public boolean thawIfLeftFrozen(Entity entity) {
+    if (unloadedFrozenEntities.isEmpty()
+        || !(entity instanceof LivingEntity)
+        || !unloadedFrozenEntities.remove(entity.getUniqueId())) {
+      return false;
+    }
+    setFrozen((LivingEntity) entity, false);
+    return true;
+  }
+
+  private static void setFrozen(LivingEntity entity, boolean frozen) {
+    for (Toggle toggle : TOGGLES) {
+      try {
+        toggle.setter.invoke(entity, frozen == toggle.frozenValue);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        throw new IllegalStateException("Could not call " + toggle.setter.getName() + " on " + entity, e);
+      }
+    }
+  }
+}
@@ -15,18 +15,27 @@
  */
 package io.github.gonalez.zentitylimiter.entity;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import io.github.gonalez.zentitylimiter.registry.ObjectRegistry;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Basic implementation of {@link EntityExtractor}, which extracts the entities recursively, if there are
@@ -34,12 +43,40 @@ import java.util.Set;
  *
  * <p>Before extracting a new entity, the entity must go through the necessary {@code filters} otherwise,
  * the entity will not be selected to be extracted.
+ *
+ * <p>The recursive search is a breadth first flood fill, which stops once {@code maxEntities} entities are
+ * extracted, and does not search from the entities found more than {@code maxDepth} searches away from the
+ * base location.
+ *
+ * <p>When {@link #countUpTo counting}, the search stops as soon as the limit is reached, so the filters of the
+ * remaining entities are never compiled.
+ *
+ * <p>When extracting for several rule descriptions at once, the nearby entities of each searched location are
+ * found once with the largest radius, and then narrowed down to the radius of each rule.
  */
 public class RecursivelyEntityExtractor implements EntityExtractor {
+  /** Finds the nearby entities of the flood fill, {@code center} is {@code null} for the base location. */
+  private interface NearbyEntitiesFunction {
+    Collection<Entity> getNearbyEntities(@Nullable Entity center, Location location, double radius);
+  }
+
   private final EntityExtractorFilterExtractor filterExtractor;
 
+  private final int maxEntities;
+  private final int maxDepth;
+
   public RecursivelyEntityExtractor(EntityExtractorFilterExtractor filterExtractor) {
+    this(filterExtractor, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  public RecursivelyEntityExtractor(
+      EntityExtractorFilterExtractor filterExtractor,
+      int maxEntities, int maxDepth) {
+    checkArgument(maxEntities > 0, "maxEntities must be positive");
+    checkArgument(maxDepth >= 0, "maxDepth must not be negative");
     this.filterExtractor = checkNotNull(filterExtractor);
+    this.maxEntities = maxEntities;
+    this.maxDepth = maxDepth;
   }
 
   @Override
@@ -48,42 +85,139 @@ public class RecursivelyEntityExtractor implements EntityExtractor {
     World world = checkNotNull(
         baseLocation.getWorld(),
         "location 'world' must not be bull");
-    Set<Entity> entityBuilder = new HashSet<>();
-    return extractEntitiesRecursively(
-        world, baseLocation, radius,
-        entityBuilder, ruleDescription,
-        filterExtractor);
+    Set<Entity> entities = new LinkedHashSet<>();
+    extractEntitiesRecursively(
+        baseLocation, radius, ruleDescription,
+        (center, location, r) -> getNearbyEntities(world, location, r),
+        entities, Integer.MAX_VALUE, entity -> true);
+    return ImmutableSet.copyOf(entities);
   }
 
-  private static ImmutableSet<Entity> extractEntitiesRecursively(
-      World world, Location location,
-      double radius, Set<Entity> entities,
-      RuleDescription ruleDescription, EntityExtractorFilterExtractor filterExtractor) {
-    for (Entity entity : world.getNearbyEntities(location, radius, radius, radius)) {
-      if (entities.contains(entity)) {
-        continue;
-      }
-      // Checks if the entity passes all the necessary filters
-      if (!isEntityAllowed(entity, filterExtractor.extractFilters(ruleDescription, entity))) {
-        continue;
+  @Override
+  public int countUpTo(
+      Location baseLocation, double radius, RuleDescription ruleDescription,
+      int limit, Predicate<? super Entity> counted) {
+    World world = checkNotNull(
+        baseLocation.getWorld(),
+        "location 'world' must not be bull");
+    if (limit <= 0) {
+      return 0;
+    }
+    if (!ruleDescription.getRule().recursively()) {
+      // Nothing to search from, so there is no need to remember the visited entities
+      int count = 0;
+      int extracted = 0;
+      for (Entity entity : getNearbyEntities(world, baseLocation, radius)) {
+        if (!filterExtractor.compileFilters(ruleDescription, entity).test(entity)) {
+          continue;
+        }
+        if (counted.test(entity) && ++count >= limit || ++extracted >= maxEntities) {
+          break;
+        }
       }
-      entities.add(entity);
-      if (ruleDescription.getRule().recursively()) {
-        entities.addAll(extractEntitiesRecursively(world, location, radius,
-            entities, ruleDescription, filterExtractor));
+      return count;
+    }
+    return extractEntitiesRecursively(
+        baseLocation, radius, ruleDescription,
+        (center, location, r) -> getNearbyEntities(world, location, r),
+        new HashSet<>(), limit, counted);
+  }
+
+  @Override
+  public ImmutableList<ImmutableSet<Entity>> extractEntitiesInLocation(
+      Location baseLocation, ImmutableList<Double> radii, ImmutableList<RuleDescription> ruleDescriptions) {
+    checkArgument(radii.size() == ruleDescriptions.size(), "radii and ruleDescriptions must have the same size");
+    World world = checkNotNull(
+        baseLocation.getWorld(),
+        "location 'world' must not be bull");
+    double maxRadius = 0;
+    for (double radius : radii) {
+      maxRadius = Math.max(maxRadius, radius);
+    }
+
+    double sharedRadius = maxRadius;
+    Collection<Entity> baseNearbyEntities = getNearbyEntities(world, baseLocation, sharedRadius);
+    Map<Entity, Collection<Entity>> sharedNearbyEntities = new HashMap<>();
+    NearbyEntitiesFunction nearbyEntitiesFunction = (center, location, radius) -> {
+      Collection<Entity> nearbyEntities = center == null
+          ? baseNearbyEntities
+          : sharedNearbyEntities.computeIfAbsent(center, c -> getNearbyEntities(world, location, sharedRadius));
+      return radius < sharedRadius ? withinRadius(nearbyEntities, location, radius) : nearbyEntities;
+    };
+
+    ImmutableList.Builder<ImmutableSet<Entity>> builder = ImmutableList.builder();
+    for (int i = 0; i < ruleDescriptions.size(); i++) {
+      Set<Entity> entities = new LinkedHashSet<>();
+      extractEntitiesRecursively(
+          baseLocation, radii.get(i), ruleDescriptions.get(i), nearbyEntitiesFunction,
+          entities, Integer.MAX_VALUE, entity -> true);
+      builder.add(ImmutableSet.copyOf(entities));
+    }
+    return builder.build();
+  }
+
+  // Same box as World#getNearbyEntities
+  private static List<Entity> withinRadius(Collection<Entity> entities, Location location, double radius) {
+    List<Entity> withinRadius = new ArrayList<>(entities.size());
+    for (Entity entity : entities) {
+      Location entityLocation = entity.getLocation();
+      if (Math.abs(entityLocation.getX() - location.getX()) <= radius
+          && Math.abs(entityLocation.getY() - location.getY()) <= radius
+          && Math.abs(entityLocation.getZ() - location.getZ()) <= radius) {
+        withinRadius.add(entity);
       }
     }
-    return ImmutableSet.copyOf(entities);
+    return withinRadius;
   }
 
-  private static boolean isEntityAllowed(
-      Entity entity, ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> filters) {
-    for (Map.Entry<EntityExtractorFilter<?>, ObjectRegistry> filterEntry : filters.entrySet()) {
-      EntityExtractorFilter entityExtractorFilter = filterEntry.getKey();
-      if (!entityExtractorFilter.allowed(filterEntry.getValue(), entity)) {
-        return false;
+  /** @return the entities found at the given location and radius, before applying any filter. */
+  protected Collection<Entity> getNearbyEntities(World world, Location location, double radius) {
+    return world.getNearbyEntities(location, radius, radius, radius);
+  }
+
+  /**
+   * Adds the extracted entities to {@code entities}, which are also the visited set of the flood fill, until
+   * {@code limit} of them are {@code counted}.
+   *
+   * @return the amount of counted entities
+   */
+  private int extractEntitiesRecursively(
+      Location baseLocation, double radius,
+      RuleDescription ruleDescription, NearbyEntitiesFunction nearbyEntitiesFunction,
+      Set<Entity> entities, int limit, Predicate<? super Entity> counted) {
+    boolean recursively = ruleDescription.getRule().recursively();
+    int count = 0;
+    // The entities to search from, and how many searches away from the base location they were found
+    Deque<Entity> pendingEntities = new ArrayDeque<>();
+    Deque<Integer> pendingDepths = new ArrayDeque<>();
+
+    Entity center = null;
+    Location location = baseLocation;
+    int depth = 0;
+    while (true) {
+      for (Entity entity : nearbyEntitiesFunction.getNearbyEntities(center, location, radius)) {
+        if (entities.contains(entity)) {
+          continue;
+        }
+        // Checks if the entity passes all the necessary filters
+        if (!filterExtractor.compileFilters(ruleDescription, entity).test(entity)) {
+          continue;
+        }
+        entities.add(entity);
+        if (counted.test(entity) && ++count >= limit || entities.size() >= maxEntities) {
+          return count;
+        }
+        if (recursively && depth < maxDepth) {
+          pendingEntities.add(entity);
+          pendingDepths.add(depth + 1);
+        }
+      }
+      if (pendingEntities.isEmpty()) {
+        return count;
       }
+      center = pendingEntities.poll();
+      location = center.getLocation();
+      depth = pendingDepths.poll();
     }
-    return true;
   }
 }
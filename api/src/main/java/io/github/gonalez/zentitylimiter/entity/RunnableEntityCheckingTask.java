@@ -17,6 +17,7 @@ package io.github.gonalez.zentitylimiter.entity;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableList;
 import io.github.gonalez.zentitylimiter.rule.Rule;
 import io.github.gonalez.zentitylimiter.rule.RuleCollection;
 import org.bukkit.entity.Entity;
@@ -27,7 +28,13 @@ import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 
-/** Implementation of {@link EntityCheckingTask} which uses runnable. */
+/**
+ * Implementation of {@link EntityCheckingTask} which uses runnable.
+ *
+ * <p>Until {@link #newCycle()} is called, a new cycle starts every time the queue is empty, after waiting for
+ * {@code interval}. Once it is called, the cycles are only started by its caller (e.g. an entity feeder), and the
+ * task just waits for more entities when the queue is empty.
+ */
 public class RunnableEntityCheckingTask implements EntityCheckingTask, Runnable {
   private final BlockingDeque<Entity> entities;
   private final Thread thread;
@@ -42,6 +49,12 @@ public class RunnableEntityCheckingTask implements EntityCheckingTask, Runnable
 
   private volatile boolean started = false;
 
+  // Whether the cycles are started by the caller of #newCycle
+  private volatile boolean cycleDriven = false;
+  // Whether a new cycle was requested, and not started yet by the checking thread
+  private volatile boolean newCycleRequested = false;
+  // Whether the callbacks were called since the last entity was checked, only used by the checking thread
+  private boolean allChecked = true;
 
   public RunnableEntityCheckingTask(
       RuleCollection.RuleCollectionFinder ruleCollectionFinder,
@@ -101,6 +114,13 @@ public class RunnableEntityCheckingTask implements EntityCheckingTask, Runnable
     entityCheckers.add(entityChecker);
   }
 
+  @Override
+  public void newCycle() {
+    cycleDriven = true;
+    // The checkers are not thread safe, so the cycle is started by the checking thread
+    newCycleRequested = true;
+  }
+
   @Override
   public void run() {
     try {
@@ -108,16 +128,30 @@ public class RunnableEntityCheckingTask implements EntityCheckingTask, Runnable
         // If the queue is empty, execute #onAllEntitiesChecked callbacks. This is mostly useful
         // for adding new entities for being checked at next execution
         if (entities.isEmpty()) {
-          callbacks.forEach(Callback::onAllEntitiesChecked);
-
-          // Sleep the thread before checking again, uses the instance {@code unit} and {code interval}
-          Thread.sleep(unit.toMillis(interval));
+          if (cycleDriven) {
+            // Only wait for the next entities, the cycle may not be over yet
+            if (!allChecked) {
+              allChecked = true;
+              callbacks.forEach(Callback::onAllEntitiesChecked);
+            }
+          } else {
+            entityCheckers.forEach(EntityChecker::newCycle);
+            callbacks.forEach(Callback::onAllEntitiesChecked);
+
+            // Sleep the thread before checking again, uses the instance {@code unit} and {code interval}
+            Thread.sleep(unit.toMillis(interval));
+          }
         }
 
         Entity entity = entities.takeFirst();
-        Rule rule = ruleCollectionFinder.findRule(entity);
+        allChecked = false;
+        if (newCycleRequested) {
+          newCycleRequested = false;
+          entityCheckers.forEach(EntityChecker::newCycle);
+        }
+        ImmutableList<Rule> rules = ruleCollectionFinder.findRules(entity);
         for (EntityChecker entityChecker : entityCheckers) {
-          entityChecker.check(entity, rule);
+          entityChecker.checkAll(entity, rules);
         }
       }
     } catch (InterruptedException ignored) {
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+
+import javax.annotation.Nullable;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * An {@link EntityHandler} which merges the exceeded entities into a single entity of their type, the stack, instead
+ * of removing them. The size of a stack is kept in its custom name, which is saved with the entity, so the stacks
+ * survive restarts. When a stack dies a new stack with the remaining size should be {@link #unstack spawned} in its
+ * place, so killing a stack gives the same drops as killing its entities one by one.
+ *
+ * <p>Only living entities without a custom name of their own are stacked, the other entities are left as they are.
+ */
+public class StackingEntityHandler implements EntityHandler {
+  private static final String STACK_NAME_PREFIX = ChatColor.GOLD + "x";
+
+  private final double mergeRadius;
+
+  /** @param mergeRadius how far a stack is searched for an entity which is {@link #handle handled} on its own */
+  public StackingEntityHandler(double mergeRadius) {
+    this.mergeRadius = mergeRadius;
+  }
+
+  @Override
+  public void handleAll(Rule rule, Entity checked, ImmutableList<Entity> entities) {
+    // The checked entity is the preferred stack, otherwise the first exceeded entity of each type
+    Map<EntityType, LivingEntity> stacks = new EnumMap<>(EntityType.class);
+    if (isStackable(checked)) {
+      stacks.put(checked.getType(), (LivingEntity) checked);
+    }
+    for (Entity entity : entities) {
+      if (entity == checked || !isStackable(entity)) {
+        continue;
+      }
+      LivingEntity stack = stacks.putIfAbsent(entity.getType(), (LivingEntity) entity);
+      if (stack != null) {
+        merge(stack, (LivingEntity) entity);
+      }
+    }
+  }
+
+  /** Merges the entity into the largest stack of its type around it, if any. */
+  @Override
+  public void handle(Entity entity) {
+    if (!isStackable(entity)) {
+      return;
+    }
+    LivingEntity stack = null;
+    for (Entity nearbyEntity : entity.getNearbyEntities(mergeRadius, mergeRadius, mergeRadius)) {
+      if (nearbyEntity.getType() == entity.getType()
+          && isStackable(nearbyEntity)
+          && (stack == null || getStackSize(nearbyEntity) > getStackSize(stack))) {
+        stack = (LivingEntity) nearbyEntity;
+      }
+    }
+    if (stack != null) {
+      merge(stack, (LivingEntity) entity);
+    }
+  }
+
+  private static void merge(LivingEntity stack, LivingEntity entity) {
+    setStackSize(stack, getStackSize(stack) + getStackSize(entity));
+    entity.remove();
+  }
+
+  /** @return whether the given entity can be merged into a stack, or be a stack. */
+  public static boolean isStackable(Entity entity) {
+    return entity instanceof LivingEntity
+        && !(entity instanceof Player)
+        && entity.isValid()
+        && getStackSize(entity) > 0;
+  }
+
+  /**
+   * @return the amount of entities the given entity stands for, 1 if it is not a stack, or 0 if it has a custom name
+   * which is not a stack size.
+   */
+  public static int getStackSize(Entity entity) {
+    String customName = entity.getCustomName();
+    if (customName == null || customName.isEmpty()) {
+      return 1;
+    }
+    if (!customName.startsWith(STACK_NAME_PREFIX)) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Integer.parseInt(customName.substring(STACK_NAME_PREFIX.length())));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /** Sets the amount of entities the given entity stands for. */
+  public static void setStackSize(LivingEntity entity, int size) {
+    if (size <= 1) {
+      entity.setCustomName(null);
+      entity.setCustomNameVisible(false);
+    } else {
+      entity.setCustomName(STACK_NAME_PREFIX + size);
+      entity.setCustomNameVisible(true);
+    }
+  }
+
+  /**
+   * Spawns the rest of the given dead stack in its place, this must be called when the stack dies.
+   *
+   * @return the new stack, or {@code null} if the dead entity was not a stack
+   */
+  @Nullable
+  public static LivingEntity unstack(LivingEntity dead) {
+    int size = getStackSize(dead);
+    if (size <= 1) {
+      return null;
+    }
+    Entity spawned = dead.getWorld().spawnEntity(dead.getLocation(), dead.getType());
+    if (!(spawned instanceof LivingEntity)) {
+      return null;
+    }
+    LivingEntity stack = (LivingEntity) spawned;
+    setStackSize(stack, size - 1);
+    return stack;
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import io.github.gonalez.zentitylimiter.rule.RuleCollection;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of {@link EntityCheckingTask} which checks the entities on the server thread. Every tick
+ * the pending entities are checked until {@code maxNanosPerTick} is spent, the entities that could not be
+ * checked in time are carried over to the next tick.
+ *
+ * <p>Entities are checked at most once per cycle, a new cycle starts when {@link #newCycle()} is called, see
+ * {@link DeduplicatingEntityQueue}.
+ *
+ * <p>This task is not thread safe, entities must be added from the server thread.
+ */
+public class TickingEntityCheckingTask implements EntityCheckingTask, Runnable {
+  private final DeduplicatingEntityQueue entities = new DeduplicatingEntityQueue();
+
+  private final List<Callback> callbacks = new ArrayList<>();
+  private final List<EntityChecker> entityCheckers = new ArrayList<>();
+
+  private final Plugin plugin;
+  private final RuleCollection.RuleCollectionFinder ruleCollectionFinder;
+
+  private final TimeUnit unit;
+  private final long interval;
+
+  private final long maxNanosPerTick;
+
+  @Nullable
+  private BukkitTask task;
+
+  // Whether the callbacks were called since the last entity was added
+  private boolean allChecked = true;
+
+  public TickingEntityCheckingTask(
+      Plugin plugin,
+      RuleCollection.RuleCollectionFinder ruleCollectionFinder,
+      TimeUnit unit, long interval,
+      long maxNanosPerTick) {
+    checkArgument(maxNanosPerTick > 0, "maxNanosPerTick must be positive");
+    this.plugin = checkNotNull(plugin);
+    this.ruleCollectionFinder = checkNotNull(ruleCollectionFinder);
+    this.unit = checkNotNull(unit);
+    this.interval = interval;
+    this.maxNanosPerTick = maxNanosPerTick;
+  }
+
+  @Override
+  public long intervalMs() {
+    return unit.toMillis(interval);
+  }
+
+  @Override
+  public void start() {
+    if (isStarted()) {
+      return;
+    }
+
+    task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+  }
+
+  @Override
+  public void shutdown() {
+    if (!isStarted()) {
+      return;
+    }
+
+    task.cancel();
+    task = null;
+    entities.clear();
+  }
+
+  public boolean isStarted() {
+    return task != null;
+  }
+
+  @Override
+  public void addCallback(Callback callback) {
+    callbacks.add(callback);
+  }
+
+  @Override
+  public void addEntityForChecking(Entity entity) {
+    if (entities.offer(entity)) {
+      allChecked = false;
+    }
+  }
+
+  @Override
+  public void addEntityChecker(EntityChecker entityChecker) {
+    entityCheckers.add(entityChecker);
+  }
+
+  @Override
+  public void newCycle() {
+    entities.newCycle();
+    entityCheckers.forEach(EntityChecker::newCycle);
+  }
+
+  @Override
+  public void run() {
+    long startNanos = System.nanoTime();
+    if (entities.isEmpty()) {
+      if (!allChecked) {
+        allChecked = true;
+        callbacks.forEach(Callback::onAllEntitiesChecked);
+      }
+      return;
+    }
+
+    // At least one entity is checked every tick, so the task always makes progress
+    do {
+      Entity entity = entities.poll();
+      // The entity may have been removed since it was added
+      if (!entity.isValid()) {
+        continue;
+      }
+      ImmutableList<Rule> rules = ruleCollectionFinder.findRules(entity);
+      for (EntityChecker entityChecker : entityCheckers) {
+        entityChecker.checkAll(entity, rules);
+      }
+    } while (!entities.isEmpty() && System.nanoTime() - startNanos < maxNanosPerTick);
+  }
+}
@@ -16,6 +16,7 @@
 package io.github.gonalez.zentitylimiter.entity.filter;
 
 import io.github.gonalez.zentitylimiter.entity.ExtraEntityExtractorFilter;
+import io.github.gonalez.zentitylimiter.entity.snapshot.EntitySnapshot;
 import org.bukkit.entity.Entity;
 
 /** Filter that checks if the entity is named or not. */
@@ -41,4 +42,14 @@ public class EntityIsNamedExtractorFilter extends ExtraEntityExtractorFilter<Boo
   protected Class<Boolean> valueType() {
     return boolean.class;
   }
+
+  @Override
+  public boolean supportsSnapshots() {
+    return true;
+  }
+
+  @Override
+  protected boolean doAllowedSnapshot(Boolean value, EntitySnapshot snapshot) {
+    return value && snapshot.named();
+  }
 }
@@ -16,6 +16,7 @@
 package io.github.gonalez.zentitylimiter.entity.filter;
 
 import io.github.gonalez.zentitylimiter.entity.ExtraEntityExtractorFilter;
+import io.github.gonalez.zentitylimiter.entity.snapshot.EntitySnapshot;
 import org.bukkit.entity.Tameable;
 
 /** Filter that checks if the entity is tamed or not. */
@@ -40,4 +41,14 @@ public class EntityIsTamedExtractorFilter extends ExtraEntityExtractorFilter<Boo
   protected Class<Boolean> valueType() {
     return boolean.class;
   }
+
+  @Override
+  public boolean supportsSnapshots() {
+    return true;
+  }
+
+  @Override
+  protected boolean doAllowedSnapshot(Boolean tamed, EntitySnapshot snapshot) {
+    return tamed == snapshot.tamed();
+  }
 }
@@ -16,6 +16,7 @@
 package io.github.gonalez.zentitylimiter.entity.filter;
 
 import io.github.gonalez.zentitylimiter.entity.ExtraEntityExtractorFilter;
+import io.github.gonalez.zentitylimiter.entity.snapshot.EntitySnapshot;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 
@@ -41,4 +42,14 @@ public class EntityTypeExtractorFilter extends ExtraEntityExtractorFilter<Entity
   protected Class<EntityType> valueType() {
     return EntityType.class;
   }
+
+  @Override
+  public boolean supportsSnapshots() {
+    return true;
+  }
+
+  @Override
+  protected boolean doAllowedSnapshot(EntityType value, EntitySnapshot snapshot) {
+    return value == snapshot.type();
+  }
 }
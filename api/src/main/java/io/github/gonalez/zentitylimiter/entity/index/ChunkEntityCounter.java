@@ -0,0 +1,182 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.index;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.github.gonalez.zentitylimiter.util.ChunkKeys;
+import io.github.gonalez.zentitylimiter.util.LongObjectHashMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Counts the tracked entities of each chunk by {@link EntityType}, so the amount of entities of a type in a
+ * chunk can be known without looking at any entity. The counts of a chunk are stored in an {@code int[]}
+ * indexed by {@link EntityType#ordinal()}.
+ *
+ * <p>Only the entities whose type is accepted by {@code trackedTypes}, and which are not {@code ignoredEntities},
+ * are counted. This class is not thread safe, it must be used from the server thread.
+ */
+public class ChunkEntityCounter implements EntityTracker {
+  private static final int CHUNK_SHIFT = 4;
+  // The counts of a chunk have an extra slot at the end, with the total of the chunk
+  private static final int TOTAL_INDEX = EntityType.values().length;
+
+  /** An entity counted by this counter, and the chunk where it was counted. */
+  private static final class TrackedEntity {
+    final Entity entity;
+    final int typeOrdinal;
+
+    UUID worldId;
+    long chunkKey;
+
+    TrackedEntity(Entity entity, UUID worldId, long chunkKey) {
+      this.entity = entity;
+      this.typeOrdinal = entity.getType().ordinal();
+      this.worldId = worldId;
+      this.chunkKey = chunkKey;
+    }
+  }
+
+  private final Map<UUID, TrackedEntity> trackedEntities = new HashMap<>();
+  private final Map<UUID, LongObjectHashMap<int[]>> worldCounts = new HashMap<>();
+
+  private final Predicate<EntityType> trackedTypes;
+  private final Predicate<Entity> ignoredEntities;
+
+  public ChunkEntityCounter(Predicate<EntityType> trackedTypes) {
+    this(trackedTypes, entity -> false);
+  }
+
+  /**
+   * Creates a new counter which does not count the {@code ignoredEntities}, such as the entities that were
+   * already handled. An entity which becomes ignored is no longer counted once tracked again or reconciled.
+   */
+  public ChunkEntityCounter(Predicate<EntityType> trackedTypes, Predicate<Entity> ignoredEntities) {
+    this.trackedTypes = checkNotNull(trackedTypes);
+    this.ignoredEntities = checkNotNull(ignoredEntities);
+  }
+
+  /** @return the amount of tracked entities of the given type in the given chunk. */
+  public int count(World world, int chunkX, int chunkZ, EntityType entityType) {
+    LongObjectHashMap<int[]> chunkCounts = worldCounts.get(world.getUID());
+    if (chunkCounts == null) {
+      return 0;
+    }
+    int[] counts = chunkCounts.get(ChunkKeys.pack(chunkX, chunkZ));
+    return counts == null ? 0 : counts[entityType.ordinal()];
+  }
+
+  /** @return the amount of tracked entities of the given type in the chunk of the given location. */
+  public int count(Location location, EntityType entityType) {
+    return count(location.getWorld(),
+        location.getBlockX() >> CHUNK_SHIFT, location.getBlockZ() >> CHUNK_SHIFT, entityType);
+  }
+
+  @Override
+  public boolean track(Entity entity) {
+    if (!trackedTypes.test(entity.getType())) {
+      return false;
+    }
+    if (ignoredEntities.test(entity)) {
+      untrack(entity);
+      return false;
+    }
+    Location location = entity.getLocation();
+    UUID worldId = location.getWorld().getUID();
+    long chunkKey = chunkKey(location);
+
+    TrackedEntity trackedEntity = trackedEntities.get(entity.getUniqueId());
+    if (trackedEntity == null) {
+      trackedEntity = new TrackedEntity(entity, worldId, chunkKey);
+      trackedEntities.put(entity.getUniqueId(), trackedEntity);
+      add(worldId, chunkKey, trackedEntity.typeOrdinal, 1);
+    } else {
+      moveTo(trackedEntity, worldId, chunkKey);
+    }
+    return true;
+  }
+
+  @Override
+  public void untrack(Entity entity) {
+    TrackedEntity trackedEntity = trackedEntities.remove(entity.getUniqueId());
+    if (trackedEntity != null) {
+      add(trackedEntity.worldId, trackedEntity.chunkKey, trackedEntity.typeOrdinal, -1);
+    }
+  }
+
+  @Override
+  public void untrackWorld(World world) {
+    UUID worldId = world.getUID();
+    trackedEntities.values().removeIf(trackedEntity -> trackedEntity.worldId.equals(worldId));
+    worldCounts.remove(worldId);
+  }
+
+  @Override
+  public void reconcile() {
+    Iterator<TrackedEntity> iterator = trackedEntities.values().iterator();
+    while (iterator.hasNext()) {
+      TrackedEntity trackedEntity = iterator.next();
+      Entity entity = trackedEntity.entity;
+      if (!entity.isValid() || ignoredEntities.test(entity)) {
+        iterator.remove();
+        add(trackedEntity.worldId, trackedEntity.chunkKey, trackedEntity.typeOrdinal, -1);
+        continue;
+      }
+      Location location = entity.getLocation();
+      moveTo(trackedEntity, location.getWorld().getUID(), chunkKey(location));
+    }
+  }
+
+  private void moveTo(TrackedEntity trackedEntity, UUID worldId, long chunkKey) {
+    if (trackedEntity.chunkKey == chunkKey && trackedEntity.worldId.equals(worldId)) {
+      return;
+    }
+    add(trackedEntity.worldId, trackedEntity.chunkKey, trackedEntity.typeOrdinal, -1);
+    trackedEntity.worldId = worldId;
+    trackedEntity.chunkKey = chunkKey;
+    add(worldId, chunkKey, trackedEntity.typeOrdinal, 1);
+  }
+
+  private void add(UUID worldId, long chunkKey, int typeOrdinal, int amount) {
+    LongObjectHashMap<int[]> chunkCounts = worldCounts.computeIfAbsent(worldId, id -> new LongObjectHashMap<>());
+    int[] counts = chunkCounts.get(chunkKey);
+    if (counts == null) {
+      if (amount < 0) {
+        return;
+      }
+      counts = new int[TOTAL_INDEX + 1];
+      chunkCounts.put(chunkKey, counts);
+    }
+    counts[typeOrdinal] += amount;
+    // Forget the chunks without entities
+    if ((counts[TOTAL_INDEX] += amount) <= 0) {
+      chunkCounts.remove(chunkKey);
+    }
+  }
+
+  private static long chunkKey(Location location) {
+    return ChunkKeys.pack(location.getBlockX() >> CHUNK_SHIFT, location.getBlockZ() >> CHUNK_SHIFT);
+  }
+}
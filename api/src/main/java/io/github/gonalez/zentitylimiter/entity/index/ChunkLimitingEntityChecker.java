@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.index;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.entity.EntityChecker;
+import io.github.gonalez.zentitylimiter.entity.EntityHandler;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nullable;
+
+/**
+ * {@link EntityChecker} which applies the {@link Rule#maxAmountPerChunk() per chunk limit} of the rules using a
+ * {@link ChunkEntityCounter}, before delegating to another checker. If the chunk of the checked entity has more
+ * entities of its type than the limit, the {@code handlers} are executed for the checked entity, without looking
+ * at any other entity.
+ */
+public class ChunkLimitingEntityChecker implements EntityChecker {
+  private final EntityChecker delegate;
+  private final ChunkEntityCounter chunkEntityCounter;
+  private final ImmutableList<EntityHandler> handlers;
+
+  public ChunkLimitingEntityChecker(
+      EntityChecker delegate,
+      ChunkEntityCounter chunkEntityCounter,
+      ImmutableList<EntityHandler> handlers) {
+    this.delegate = checkNotNull(delegate);
+    this.chunkEntityCounter = checkNotNull(chunkEntityCounter);
+    this.handlers = checkNotNull(handlers);
+  }
+
+  @Override
+  public ResultType check(Entity entity, @Nullable Rule rule) {
+    if (rule != null && exceedsChunkLimit(entity, rule)) {
+      return ResultType.SUCCEED;
+    }
+    return delegate.check(entity, rule);
+  }
+
+  @Override
+  public ImmutableList<ResultType> checkAll(Entity entity, ImmutableList<Rule> rules) {
+    if (rules.isEmpty()) {
+      return ImmutableList.of();
+    }
+    for (int i = 0; i < rules.size(); i++) {
+      if (exceedsChunkLimit(entity, rules.get(i))) {
+        // The entity has been handled, so the other rules are not checked
+        ImmutableList.Builder<ResultType> results = ImmutableList.builder();
+        for (int j = 0; j < rules.size(); j++) {
+          results.add(i == j ? ResultType.SUCCEED : ResultType.ALREADY_CHECKED);
+        }
+        return results.build();
+      }
+    }
+    return delegate.checkAll(entity, rules);
+  }
+
+  /** Executes the handlers for the entity if it exceeds the per chunk limit of the rule. */
+  private boolean exceedsChunkLimit(Entity entity, Rule rule) {
+    if (isHandled(entity)) {
+      // Already handled by a previous check, and no longer counted
+      chunkEntityCounter.untrack(entity);
+      return rule.maxAmountPerChunk() >= 0;
+    }
+    if (rule.maxAmountPerChunk() < 0
+        // Make sure the entity is counted, it may have not been tracked yet
+        || !chunkEntityCounter.track(entity)
+        || chunkEntityCounter.count(entity.getLocation(), entity.getType()) <= rule.maxAmountPerChunk()) {
+      return false;
+    }
+    for (EntityHandler entityHandler : handlers) {
+      entityHandler.handle(entity);
+    }
+    // The handled entities are not counted anymore, whether they are removed, removed later or kept (e.g. frozen),
+    // so only the entities above the limit are handled
+    chunkEntityCounter.untrack(entity);
+    return true;
+  }
+
+  /** @return whether the entity is pending or kept handled by any of the {@code handlers}. */
+  public static boolean isHandled(Entity entity, ImmutableList<EntityHandler> handlers) {
+    for (EntityHandler entityHandler : handlers) {
+      if (entityHandler.isPending(entity) || entityHandler.isHandled(entity)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isHandled(Entity entity) {
+    return isHandled(entity, handlers);
+  }
+
+  @Override
+  public void init(Plugin plugin) {
+    delegate.init(plugin);
+  }
+
+  @Override
+  public boolean isInitialized() {
+    return delegate.isInitialized();
+  }
+
+  @Override
+  public void newCycle() {
+    delegate.newCycle();
+  }
+}
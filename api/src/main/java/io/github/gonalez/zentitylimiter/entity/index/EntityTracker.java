@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.index;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+/**
+ * Keeps some state about the entities of the server, which must be updated from the entity lifecycle
+ * events, and {@link #reconcile() reconciled} periodically to follow the changes that have no event.
+ */
+public interface EntityTracker {
+
+  /**
+   * Starts tracking the entity, or updates it if it was already tracked.
+   *
+   * @return {@code true} if the entity is tracked
+   */
+  boolean track(Entity entity);
+
+  /** Stops tracking the entity. */
+  void untrack(Entity entity);
+
+  /** Stops tracking all the entities of the given world. */
+  void untrackWorld(World world);
+
+  /** Updates the tracked entities that moved, and forgets the entities that are no longer valid. */
+  void reconcile();
+}
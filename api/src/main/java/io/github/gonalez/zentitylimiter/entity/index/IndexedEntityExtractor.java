@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.index;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.github.gonalez.zentitylimiter.entity.EntityExtractorFilterExtractor;
+import io.github.gonalez.zentitylimiter.entity.RecursivelyEntityExtractor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.Collection;
+
+/**
+ * A {@link RecursivelyEntityExtractor} which finds the nearby entities using a {@link SpatialEntityIndex}, instead
+ * of {@link World#getNearbyEntities}. Entities that are not tracked by the index are never extracted.
+ */
+public class IndexedEntityExtractor extends RecursivelyEntityExtractor {
+  private final SpatialEntityIndex entityIndex;
+
+  public IndexedEntityExtractor(
+      EntityExtractorFilterExtractor filterExtractor,
+      SpatialEntityIndex entityIndex) {
+    this(filterExtractor, entityIndex, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  public IndexedEntityExtractor(
+      EntityExtractorFilterExtractor filterExtractor,
+      SpatialEntityIndex entityIndex,
+      int maxEntities, int maxDepth) {
+    super(filterExtractor, maxEntities, maxDepth);
+    this.entityIndex = checkNotNull(entityIndex);
+  }
+
+  @Override
+  protected Collection<Entity> getNearbyEntities(World world, Location location, double radius) {
+    return entityIndex.getNearbyEntities(location, radius);
+  }
+}
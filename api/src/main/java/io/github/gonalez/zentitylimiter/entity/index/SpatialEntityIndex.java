@@ -0,0 +1,198 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.github.gonalez.zentitylimiter.util.ChunkKeys;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * A spatial hash grid of entities for each world. Entities are grouped in square cells of
+ * {@code 1 << cellShift} blocks, so the entities at a location and radius can be found by only looking at the
+ * cells that the radius covers.
+ *
+ * <p>Only the entities whose type is accepted by {@code trackedTypes} are tracked. As any {@link EntityTracker},
+ * the index must be updated when entities spawn, die or are unloaded, and {@link #reconcile()} must be called
+ * periodically to move the entities that changed their cell and to forget removed entities.
+ *
+ * <p>This class is not thread safe, it must be used from the server thread.
+ */
+public class SpatialEntityIndex implements EntityTracker {
+  /** An entity tracked by the index, and the cell where it is. */
+  private static final class TrackedEntity {
+    final Entity entity;
+
+    UUID worldId;
+    long cellKey;
+
+    TrackedEntity(Entity entity, UUID worldId, long cellKey) {
+      this.entity = entity;
+      this.worldId = worldId;
+      this.cellKey = cellKey;
+    }
+  }
+
+  private final Map<UUID, TrackedEntity> trackedEntities = new HashMap<>();
+  private final Map<UUID, Map<Long, List<Entity>>> worldCells = new HashMap<>();
+
+  private final Predicate<EntityType> trackedTypes;
+  private final int cellShift;
+
+  public SpatialEntityIndex(Predicate<EntityType> trackedTypes, int cellShift) {
+    checkArgument(cellShift >= 0 && cellShift < 31, "invalid cellShift: %s", cellShift);
+    this.trackedTypes = checkNotNull(trackedTypes);
+    this.cellShift = cellShift;
+  }
+
+  /** @return the number of tracked entities. */
+  public int size() {
+    return trackedEntities.size();
+  }
+
+  /** Adds the entity to the index, or moves it to its current cell if it was already tracked. */
+  @Override
+  public boolean track(Entity entity) {
+    if (!trackedTypes.test(entity.getType())) {
+      return false;
+    }
+    Location location = entity.getLocation();
+    UUID worldId = location.getWorld().getUID();
+    long cellKey = cellKey(location.getX(), location.getZ());
+
+    TrackedEntity trackedEntity = trackedEntities.get(entity.getUniqueId());
+    if (trackedEntity == null) {
+      trackedEntities.put(entity.getUniqueId(), new TrackedEntity(entity, worldId, cellKey));
+      addToCell(worldId, cellKey, entity);
+    } else {
+      moveTo(trackedEntity, worldId, cellKey);
+    }
+    return true;
+  }
+
+  @Override
+  public void untrack(Entity entity) {
+    TrackedEntity trackedEntity = trackedEntities.remove(entity.getUniqueId());
+    if (trackedEntity != null) {
+      removeFromCell(trackedEntity.worldId, trackedEntity.cellKey, trackedEntity.entity);
+    }
+  }
+
+  @Override
+  public void untrackWorld(World world) {
+    UUID worldId = world.getUID();
+    trackedEntities.values().removeIf(trackedEntity -> trackedEntity.worldId.equals(worldId));
+    worldCells.remove(worldId);
+  }
+
+  @Override
+  public void reconcile() {
+    Iterator<TrackedEntity> iterator = trackedEntities.values().iterator();
+    while (iterator.hasNext()) {
+      TrackedEntity trackedEntity = iterator.next();
+      Entity entity = trackedEntity.entity;
+      if (!entity.isValid()) {
+        iterator.remove();
+        removeFromCell(trackedEntity.worldId, trackedEntity.cellKey, entity);
+        continue;
+      }
+      Location location = entity.getLocation();
+      moveTo(trackedEntity, location.getWorld().getUID(), cellKey(location.getX(), location.getZ()));
+    }
+  }
+
+  /**
+   * @return the tracked entities at the given location and radius, using the same box as
+   * {@link World#getNearbyEntities}.
+   */
+  public List<Entity> getNearbyEntities(Location location, double radius) {
+    List<Entity> nearbyEntities = new ArrayList<>();
+    Map<Long, List<Entity>> cells = worldCells.get(location.getWorld().getUID());
+    if (cells == null) {
+      return nearbyEntities;
+    }
+    int minCellX = cell(location.getX() - radius), maxCellX = cell(location.getX() + radius);
+    int minCellZ = cell(location.getZ() - radius), maxCellZ = cell(location.getZ() + radius);
+    for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+      for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+        List<Entity> cellEntities = cells.get(ChunkKeys.pack(cellX, cellZ));
+        if (cellEntities == null) {
+          continue;
+        }
+        for (Entity entity : cellEntities) {
+          if (!entity.isValid()) {
+            continue;
+          }
+          // The entity may have moved since it was last updated
+          Location entityLocation = entity.getLocation();
+          if (Math.abs(entityLocation.getX() - location.getX()) <= radius
+              && Math.abs(entityLocation.getY() - location.getY()) <= radius
+              && Math.abs(entityLocation.getZ() - location.getZ()) <= radius) {
+            nearbyEntities.add(entity);
+          }
+        }
+      }
+    }
+    return nearbyEntities;
+  }
+
+  private void moveTo(TrackedEntity trackedEntity, UUID worldId, long cellKey) {
+    if (trackedEntity.cellKey == cellKey && trackedEntity.worldId.equals(worldId)) {
+      return;
+    }
+    removeFromCell(trackedEntity.worldId, trackedEntity.cellKey, trackedEntity.entity);
+    trackedEntity.worldId = worldId;
+    trackedEntity.cellKey = cellKey;
+    addToCell(worldId, cellKey, trackedEntity.entity);
+  }
+
+  private void addToCell(UUID worldId, long cellKey, Entity entity) {
+    worldCells.computeIfAbsent(worldId, id -> new HashMap<>())
+        .computeIfAbsent(cellKey, key -> new ArrayList<>())
+        .add(entity);
+  }
+
+  private void removeFromCell(UUID worldId, long cellKey, Entity entity) {
+    Map<Long, List<Entity>> cells = worldCells.get(worldId);
+    if (cells == null) {
+      return;
+    }
+    List<Entity> cellEntities = cells.get(cellKey);
+    if (cellEntities != null && cellEntities.remove(entity) && cellEntities.isEmpty()) {
+      cells.remove(cellKey);
+    }
+  }
+
+  private long cellKey(double x, double z) {
+    return ChunkKeys.pack(cell(x), cell(z));
+  }
+
+  private int cell(double coordinate) {
+    return (int) Math.floor(coordinate) >> cellShift;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.snapshot;
+
+import com.google.auto.value.AutoValue;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Tameable;
+
+import java.util.UUID;
+
+/**
+ * An immutable copy of the state of an entity that is needed to check it, which can be safely used outside
+ * the server thread.
+ */
+@AutoValue
+public abstract class EntitySnapshot {
+  /** Creates a new snapshot of the given entity, this must be called on the server thread. */
+  public static EntitySnapshot of(Entity entity) {
+    Location location = entity.getLocation();
+    return new AutoValue_EntitySnapshot(
+        entity.getUniqueId(),
+        location.getWorld().getUID(),
+        location.getX(), location.getY(), location.getZ(),
+        entity.getType(),
+        entity instanceof Tameable && ((Tameable) entity).isTamed(),
+        entity.getCustomName() != null);
+  }
+
+  public abstract UUID uniqueId();
+  public abstract UUID worldId();
+
+  public abstract double x();
+  public abstract double y();
+  public abstract double z();
+
+  public abstract EntityType type();
+
+  public abstract boolean tamed();
+  public abstract boolean named();
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.snapshot;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.github.gonalez.zentitylimiter.entity.EntityExtractorFilter;
+import io.github.gonalez.zentitylimiter.entity.RuleDescription;
+import io.github.gonalez.zentitylimiter.registry.ObjectRegistry;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import io.github.gonalez.zentitylimiter.util.ChunkKeys;
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Evaluates the {@link Rule} limits against {@link EntitySnapshot}s, doing the same work as the
+ * {@link io.github.gonalez.zentitylimiter.entity.AbstractEntityChecker#check entity checks} without using the
+ * Bukkit api, so it can run on any thread.
+ *
+ * <p>Rules whose {@link RuleDescription} has filters which do not {@link EntityExtractorFilter#supportsSnapshots()
+ * support snapshots} cannot be evaluated, the entities of these rules are returned as
+ * {@link Result#unsupportedEntities() unsupported} to be checked on the server thread instead.
+ *
+ * <p>Rules with a {@link Rule#maxAmountPerChunk() per chunk limit} are returned as unsupported too, since the
+ * entities of each chunk are only counted on the server thread.
+ *
+ * <p>{@link Rule#recursively() Recursive} rules are flood filled like the
+ * {@link io.github.gonalez.zentitylimiter.entity.RecursivelyEntityExtractor}, with the same caps, but only
+ * through the given snapshots.
+ */
+public class EntitySnapshotEvaluator {
+  // The size of the cells that the snapshots are grouped by, in blocks
+  private static final int CELL_SHIFT = 4;
+
+  /** The evaluation of the rule of a checked entity. */
+  public static final class Check {
+    private final UUID checked;
+    private final Rule rule;
+    private final ImmutableList<UUID> entities;
+
+    Check(UUID checked, Rule rule, ImmutableList<UUID> entities) {
+      this.checked = checked;
+      this.rule = rule;
+      this.entities = entities;
+    }
+
+    /** @return the checked entity. */
+    public UUID checked() {
+      return checked;
+    }
+
+    /** @return the evaluated rule. */
+    public Rule rule() {
+      return rule;
+    }
+
+    /** @return the entities found for the rule around the checked entity, in extraction order. */
+    public ImmutableList<UUID> entities() {
+      return entities;
+    }
+  }
+
+  /** The result of {@link #evaluate}. */
+  public static final class Result {
+    private final ImmutableList<Check> checks;
+    private final ImmutableSet<UUID> exceededEntities;
+    private final ImmutableListMultimap<UUID, Rule> unsupportedEntities;
+
+    Result(
+        ImmutableList<Check> checks,
+        ImmutableSet<UUID> exceededEntities,
+        ImmutableListMultimap<UUID, Rule> unsupportedEntities) {
+      this.checks = checks;
+      this.exceededEntities = exceededEntities;
+      this.unsupportedEntities = unsupportedEntities;
+    }
+
+    /**
+     * @return the evaluated checks, either within or over the limit of their rule, so the exceeded entities can
+     * be handled per rule like {@link io.github.gonalez.zentitylimiter.entity.EntityHandlingEntityChecker} does.
+     */
+    public ImmutableList<Check> checks() {
+      return checks;
+    }
+
+    /** @return the entities that exceeded the limit of any rule. */
+    public ImmutableSet<UUID> exceededEntities() {
+      return exceededEntities;
+    }
+
+    /** @return the checked entities and their rules which could not be evaluated using snapshots. */
+    public ImmutableListMultimap<UUID, Rule> unsupportedEntities() {
+      return unsupportedEntities;
+    }
+  }
+
+  private final RuleDescription.Provider ruleDescriptionProvider;
+
+  private final int maxEntities;
+  private final int maxDepth;
+
+  public EntitySnapshotEvaluator(RuleDescription.Provider ruleDescriptionProvider) {
+    this(ruleDescriptionProvider, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  public EntitySnapshotEvaluator(
+      RuleDescription.Provider ruleDescriptionProvider,
+      int maxEntities, int maxDepth) {
+    checkArgument(maxEntities > 0, "maxEntities must be positive");
+    checkArgument(maxDepth >= 0, "maxDepth must not be negative");
+    this.ruleDescriptionProvider = checkNotNull(ruleDescriptionProvider);
+    this.maxEntities = maxEntities;
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Evaluates the rule of each checked entity, the entities around a checked entity must be included in
+   * {@code snapshots} to be counted.
+   *
+   * @param snapshots the snapshots of all the entities of the area being evaluated
+   * @param checkedEntities the entities to check, and the rules of each entity
+   */
+  public Result evaluate(
+      ImmutableList<EntitySnapshot> snapshots, ImmutableListMultimap<UUID, Rule> checkedEntities) {
+    Map<UUID, EntitySnapshot> snapshotsById = new HashMap<>();
+    Map<UUID, Map<Long, List<EntitySnapshot>>> cellsByWorld = new HashMap<>();
+    for (EntitySnapshot snapshot : snapshots) {
+      snapshotsById.put(snapshot.uniqueId(), snapshot);
+      cellsByWorld.computeIfAbsent(snapshot.worldId(), worldId -> new HashMap<>())
+          .computeIfAbsent(
+              ChunkKeys.pack(cell(snapshot.x()), cell(snapshot.z())), key -> new ArrayList<>())
+          .add(snapshot);
+    }
+
+    ImmutableList.Builder<Check> checks = ImmutableList.builder();
+    ImmutableSet.Builder<UUID> exceededEntities = ImmutableSet.builder();
+    ImmutableListMultimap.Builder<UUID, Rule> unsupportedEntities = ImmutableListMultimap.builder();
+
+    // Entities found by an evaluation of a rule are not evaluated again for the same rule
+    Map<Rule, Set<UUID>> coveredEntities = new HashMap<>();
+    for (Map.Entry<UUID, Rule> checkedEntry : checkedEntities.entries()) {
+      EntitySnapshot checked = snapshotsById.get(checkedEntry.getKey());
+      Rule rule = checkedEntry.getValue();
+      if (checked == null) {
+        continue;
+      }
+      RuleDescription ruleDescription = ruleDescriptionProvider.provide(rule);
+      if (ruleDescription == null) {
+        continue;
+      }
+      ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> filters = ruleDescription.getFilters();
+      if (rule.maxAmountPerChunk() >= 0 || !supportsSnapshots(filters)) {
+        unsupportedEntities.put(checked.uniqueId(), rule);
+        continue;
+      }
+
+      Set<UUID> covered = coveredEntities.computeIfAbsent(rule, r -> new HashSet<>());
+      if (!covered.add(checked.uniqueId())) {
+        continue;
+      }
+
+      List<EntitySnapshot> extracted =
+          extractSnapshotsRecursively(cellsByWorld.get(checked.worldId()), checked, rule, filters);
+      ImmutableList.Builder<UUID> extractedIds = ImmutableList.builder();
+      for (EntitySnapshot snapshot : extracted) {
+        covered.add(snapshot.uniqueId());
+        extractedIds.add(snapshot.uniqueId());
+      }
+      for (int i = rule.maxAmount(); i < extracted.size(); i++) {
+        exceededEntities.add(extracted.get(i).uniqueId());
+      }
+      checks.add(new Check(checked.uniqueId(), rule, extractedIds.build()));
+    }
+    return new Result(checks.build(), exceededEntities.build(), unsupportedEntities.build());
+  }
+
+  private List<EntitySnapshot> extractSnapshotsRecursively(
+      Map<Long, List<EntitySnapshot>> cells, EntitySnapshot base,
+      Rule rule, ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> filters) {
+    List<EntitySnapshot> extracted = new ArrayList<>();
+    Set<UUID> visited = new HashSet<>();
+    // Same as RecursivelyEntityExtractor, a breadth first flood fill from the base snapshot
+    Deque<EntitySnapshot> pendingSnapshots = new ArrayDeque<>();
+    Deque<Integer> pendingDepths = new ArrayDeque<>();
+
+    EntitySnapshot center = base;
+    int depth = 0;
+    while (true) {
+      for (EntitySnapshot snapshot : extractSnapshots(cells, center, rule.radius(), filters)) {
+        if (!visited.add(snapshot.uniqueId())) {
+          continue;
+        }
+        extracted.add(snapshot);
+        if (extracted.size() >= maxEntities) {
+          return extracted;
+        }
+        if (rule.recursively() && depth < maxDepth) {
+          pendingSnapshots.add(snapshot);
+          pendingDepths.add(depth + 1);
+        }
+      }
+      if (pendingSnapshots.isEmpty()) {
+        return extracted;
+      }
+      center = pendingSnapshots.poll();
+      depth = pendingDepths.poll();
+    }
+  }
+
+  private static List<EntitySnapshot> extractSnapshots(
+      Map<Long, List<EntitySnapshot>> cells, EntitySnapshot center,
+      double radius, ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> filters) {
+    List<EntitySnapshot> extracted = new ArrayList<>();
+    for (int cellX = cell(center.x() - radius); cellX <= cell(center.x() + radius); cellX++) {
+      for (int cellZ = cell(center.z() - radius); cellZ <= cell(center.z() + radius); cellZ++) {
+        List<EntitySnapshot> cellSnapshots = cells.get(ChunkKeys.pack(cellX, cellZ));
+        if (cellSnapshots == null) {
+          continue;
+        }
+        for (EntitySnapshot snapshot : cellSnapshots) {
+          // Same box as World#getNearbyEntities
+          if (Math.abs(snapshot.x() - center.x()) <= radius
+              && Math.abs(snapshot.y() - center.y()) <= radius
+              && Math.abs(snapshot.z() - center.z()) <= radius
+              && isSnapshotAllowed(snapshot, filters)) {
+            extracted.add(snapshot);
+          }
+        }
+      }
+    }
+    return extracted;
+  }
+
+  private static boolean supportsSnapshots(
+      ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> filters) {
+    for (EntityExtractorFilter<?> filter : filters.keySet()) {
+      if (!filter.supportsSnapshots()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSnapshotAllowed(
+      EntitySnapshot snapshot, ImmutableMap<EntityExtractorFilter<?>, ObjectRegistry> filters) {
+    Class<?> entityClass = snapshot.type().getEntityClass();
+    if (entityClass == null) {
+      entityClass = Entity.class;
+    }
+    for (Map.Entry<EntityExtractorFilter<?>, ObjectRegistry> filterEntry : filters.entrySet()) {
+      EntityExtractorFilter<?> filter = filterEntry.getKey();
+      // Same as ClassEntityExtractorFilterExtractor, filters only apply to entities of their type
+      if (!filter.filterType().isAssignableFrom(entityClass)) {
+        continue;
+      }
+      if (!filter.allowedSnapshot(filterEntry.getValue(), snapshot)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int cell(double coordinate) {
+    return (int) Math.floor(coordinate) >> CELL_SHIFT;
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.snapshot;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Iterables;
+import io.github.gonalez.zentitylimiter.entity.DeduplicatingEntityQueue;
+import io.github.gonalez.zentitylimiter.entity.EntityChecker;
+import io.github.gonalez.zentitylimiter.entity.EntityCheckingTask;
+import io.github.gonalez.zentitylimiter.entity.EntityHandler;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import io.github.gonalez.zentitylimiter.rule.RuleCollection;
+import io.github.gonalez.zentitylimiter.util.ChunkKeys;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/**
+ * Implementation of {@link EntityCheckingTask} which splits the checks into three phases:
+ *
+ * <ol>
+ *   <li>On the server thread, the entities to check and the entities of the chunks around them are captured
+ *   into {@link EntitySnapshot}s, spending at most {@code maxNanosPerTick} every tick.
+ *   <li>The snapshots are evaluated by an {@link EntitySnapshotEvaluator} using the {@code executor}.
+ *   <li>Back on the server thread, the {@code handlers} are executed for the entities of each evaluated rule,
+ *   same as {@link io.github.gonalez.zentitylimiter.entity.EntityHandlingEntityChecker}.
+ * </ol>
+ *
+ * <p>Entities whose rule cannot be evaluated using snapshots, for example the rules with a per chunk limit, are
+ * checked on the server thread by the {@link #addEntityChecker entity checkers} instead. Note that {@link
+ * io.github.gonalez.zentitylimiter.entity.event.EntityCheckEvent} is not called for evaluated snapshots.
+ *
+ * <p>Entities are captured at most once per cycle, a new cycle starts when {@link #newCycle()} is called.
+ */
+public class SnapshotEntityCheckingTask implements EntityCheckingTask, Runnable {
+  private static final int CHUNK_SHIFT = 4;
+
+  private final DeduplicatingEntityQueue entities = new DeduplicatingEntityQueue();
+
+  private final List<Callback> callbacks = new ArrayList<>();
+  private final List<EntityChecker> entityCheckers = new ArrayList<>();
+
+  private final Plugin plugin;
+  private final RuleCollection.RuleCollectionFinder ruleCollectionFinder;
+  private final EntitySnapshotEvaluator snapshotEvaluator;
+  private final ImmutableList<EntityHandler> handlers;
+  private final Executor executor;
+
+  private final TimeUnit unit;
+  private final long interval;
+
+  private final long maxNanosPerTick;
+
+  @Nullable
+  private BukkitTask task;
+  // Read by the executor threads, to avoid scheduling tasks once this task is shutdown
+  private volatile boolean started;
+
+  // Whether the callbacks were called since the last entity was added
+  private boolean allChecked = true;
+
+  public SnapshotEntityCheckingTask(
+      Plugin plugin,
+      RuleCollection.RuleCollectionFinder ruleCollectionFinder,
+      EntitySnapshotEvaluator snapshotEvaluator,
+      ImmutableList<EntityHandler> handlers,
+      Executor executor,
+      TimeUnit unit, long interval,
+      long maxNanosPerTick) {
+    checkArgument(maxNanosPerTick > 0, "maxNanosPerTick must be positive");
+    this.plugin = checkNotNull(plugin);
+    this.ruleCollectionFinder = checkNotNull(ruleCollectionFinder);
+    this.snapshotEvaluator = checkNotNull(snapshotEvaluator);
+    this.handlers = checkNotNull(handlers);
+    this.executor = checkNotNull(executor);
+    this.unit = checkNotNull(unit);
+    this.interval = interval;
+    this.maxNanosPerTick = maxNanosPerTick;
+  }
+
+  @Override
+  public long intervalMs() {
+    return unit.toMillis(interval);
+  }
+
+  @Override
+  public void start() {
+    if (started) {
+      return;
+    }
+
+    task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+    started = true;
+  }
+
+  @Override
+  public void shutdown() {
+    if (!started) {
+      return;
+    }
+
+    started = false;
+    task.cancel();
+    task = null;
+    entities.clear();
+  }
+
+  @Override
+  public void addCallback(Callback callback) {
+    callbacks.add(callback);
+  }
+
+  @Override
+  public void addEntityForChecking(Entity entity) {
+    if (entities.offer(entity)) {
+      allChecked = false;
+    }
+  }
+
+  @Override
+  public void addEntityChecker(EntityChecker entityChecker) {
+    entityCheckers.add(entityChecker);
+  }
+
+  @Override
+  public void newCycle() {
+    entities.newCycle();
+    entityCheckers.forEach(EntityChecker::newCycle);
+  }
+
+  @Override
+  public void run() {
+    long startNanos = System.nanoTime();
+    if (entities.isEmpty()) {
+      if (!allChecked) {
+        allChecked = true;
+        callbacks.forEach(Callback::onAllEntitiesChecked);
+      }
+      return;
+    }
+
+    ImmutableList.Builder<EntitySnapshot> snapshots = ImmutableList.builder();
+    ImmutableListMultimap.Builder<UUID, Rule> checkedEntities = ImmutableListMultimap.builder();
+    // All the captured entities, only accessed from the server thread
+    Map<UUID, Entity> capturedEntities = new HashMap<>();
+    Map<World, Set<Long>> capturedChunks = new HashMap<>();
+    do {
+      Entity entity = entities.poll();
+      // Pending entities are already going to be handled
+      if (!entity.isValid() || isPending(entity)) {
+        continue;
+      }
+      ImmutableList<Rule> rules = ruleCollectionFinder.findRules(entity);
+      if (rules.isEmpty()) {
+        continue;
+      }
+      double radius = 0;
+      for (Rule rule : rules) {
+        checkedEntities.put(entity.getUniqueId(), rule);
+        radius = Math.max(radius, rule.radius());
+      }
+      captureChunksAround(
+          entity.getLocation(), radius, snapshots, capturedEntities, capturedChunks, this::isPending);
+    } while (!entities.isEmpty() && System.nanoTime() - startNanos < maxNanosPerTick);
+
+    ImmutableList<EntitySnapshot> snapshotList = snapshots.build();
+    ImmutableListMultimap<UUID, Rule> checkedEntityMap = checkedEntities.build();
+    if (checkedEntityMap.isEmpty()) {
+      return;
+    }
+    executor.execute(() -> {
+      EntitySnapshotEvaluator.Result result;
+      try {
+        result = snapshotEvaluator.evaluate(snapshotList, checkedEntityMap);
+      } catch (RuntimeException e) {
+        plugin.getLogger().log(Level.SEVERE, "Could not evaluate entity snapshots", e);
+        return;
+      }
+      if (started) {
+        plugin.getServer().getScheduler().runTask(plugin, () -> apply(result, capturedEntities));
+      }
+    });
+  }
+
+  private boolean isPending(Entity entity) {
+    for (EntityHandler entityHandler : handlers) {
+      if (entityHandler.isPending(entity)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isHandled(Entity entity) {
+    for (EntityHandler entityHandler : handlers) {
+      if (entityHandler.isHandled(entity)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Captures the entities of the chunks around the location, but the {@code pending} entities. */
+  private static void captureChunksAround(
+      Location location, double radius,
+      ImmutableList.Builder<EntitySnapshot> snapshots,
+      Map<UUID, Entity> capturedEntities, Map<World, Set<Long>> capturedChunks,
+      Predicate<Entity> pending) {
+    World world = location.getWorld();
+    Set<Long> worldChunks = capturedChunks.computeIfAbsent(world, w -> new HashSet<>());
+    int minChunkX = (int) Math.floor(location.getX() - radius) >> CHUNK_SHIFT;
+    int maxChunkX = (int) Math.floor(location.getX() + radius) >> CHUNK_SHIFT;
+    int minChunkZ = (int) Math.floor(location.getZ() - radius) >> CHUNK_SHIFT;
+    int maxChunkZ = (int) Math.floor(location.getZ() + radius) >> CHUNK_SHIFT;
+    for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+      for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+        if (!worldChunks.add(ChunkKeys.pack(chunkX, chunkZ)) || !world.isChunkLoaded(chunkX, chunkZ)) {
+          continue;
+        }
+        for (Entity entity : world.getChunkAt(chunkX, chunkZ).getEntities()) {
+          // Same as AbstractEntityChecker, the pending entities are not counted
+          if (pending.test(entity)) {
+            continue;
+          }
+          if (capturedEntities.putIfAbsent(entity.getUniqueId(), entity) == null) {
+            snapshots.add(EntitySnapshot.of(entity));
+          }
+        }
+      }
+    }
+  }
+
+  private void apply(EntitySnapshotEvaluator.Result result, Map<UUID, Entity> capturedEntities) {
+    for (EntitySnapshotEvaluator.Check check : result.checks()) {
+      Entity checked = capturedEntities.get(check.checked());
+      if (checked == null) {
+        continue;
+      }
+      Rule rule = check.rule();
+      ImmutableList.Builder<Entity> builder = ImmutableList.builder();
+      for (UUID uniqueId : check.entities()) {
+        Entity entity = capturedEntities.get(uniqueId);
+        // The entity may have been removed, or handled by a previous check, since the snapshot was captured
+        if (entity != null && entity.isValid() && !isPending(entity)) {
+          builder.add(entity);
+        }
+      }
+      ImmutableList<Entity> entities = builder.build();
+      // Same as EntityHandlingEntityChecker, so every handler behaves the same as with the other tasks
+      if (entities.size() > rule.maxAmount()) {
+        if (Iterables.any(entities, this::isHandled)) {
+          entities = ImmutableList.<Entity>builder()
+              .addAll(Iterables.filter(entities, e -> !isHandled(e)))
+              .addAll(Iterables.filter(entities, this::isHandled))
+              .build();
+        }
+        ImmutableList<Entity> allowed = entities.subList(0, Math.max(0, rule.maxAmount()));
+        ImmutableList<Entity> exceeded = entities.subList(allowed.size(), entities.size());
+        for (EntityHandler entityHandler : handlers) {
+          if (!allowed.isEmpty()) {
+            entityHandler.handleWithinLimit(rule, checked, allowed);
+          }
+          entityHandler.handleAll(rule, checked, exceeded);
+        }
+      } else {
+        for (EntityHandler entityHandler : handlers) {
+          entityHandler.handleWithinLimit(rule, checked, entities);
+        }
+      }
+    }
+    for (Map.Entry<UUID, Rule> unsupportedEntry : result.unsupportedEntities().entries()) {
+      Entity entity = capturedEntities.get(unsupportedEntry.getKey());
+      if (entity == null || !entity.isValid()) {
+        continue;
+      }
+      for (EntityChecker entityChecker : entityCheckers) {
+        entityChecker.check(entity, unsupportedEntry.getValue());
+      }
+    }
+  }
+}
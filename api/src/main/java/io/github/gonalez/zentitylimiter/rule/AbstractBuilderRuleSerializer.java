@@ -16,106 +16,38 @@
 package io.github.gonalez.zentitylimiter.rule;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
-import com.google.gson.internal.Primitives;
 import io.github.gonalez.zentitylimiter.util.converter.ObjectConverter;
-import io.github.gonalez.zentitylimiter.util.Pair;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.NoSuchElementException;
-import java.util.Objects;
-import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
- * Base class for {@link RuleSerializer} which creates rules from its builder. To use this implementation
- * correctly the rule which will be serialized must have a static method called "newBuilder" with the
- * necessary methods to build the rule. This implementation uses reflection which can be expensive.
+ * Base class for {@link RuleSerializer} which creates rules from their builder, through the {@link RuleSchema} of
+ * the rule type. The schema is generated at compile time for the rule types annotated with
+ * {@link GenerateRuleSchema}, otherwise the rule builder is found with reflection, which can be expensive.
  */
 public abstract class AbstractBuilderRuleSerializer implements RuleSerializer {
-  // Defines which characters a rule builder method should start with
-  static final String SET_BUILDER_METHOD_START = "set";
-
-  private static final ImmutableSet<Method> IGNORED =
-      ImmutableSet.<Method>builder()
-          .add(Object.class.getDeclaredMethods())
-          .build();
-
-  private final Pair</*builder=*/Method, /*rule=*/Method> builderRuleMethodPair;
-
-  private final ImmutableMap<String, Method> ruleMethods;
-  private final ImmutableMap<String, Method> builderMethods;
+  private final RuleSchema<Rule> ruleSchema;
 
   private final CopyOnWriteArrayList<RuleSerializerListener> listeners = new CopyOnWriteArrayList<>();
 
   private final ObjectConverter.Registry objectConverterRegistry;
   private final boolean checkForMissingFields;
 
+  @SuppressWarnings("unchecked")
   public AbstractBuilderRuleSerializer(
       ObjectConverter.Registry objectConverterRegistry,
       boolean checkForMissingFields) {
     this.objectConverterRegistry = checkNotNull(objectConverterRegistry);
     this.checkForMissingFields = checkForMissingFields;
-    Class<? extends Rule> ruleClass = ruleType();
-
-    builderRuleMethodPair =
-        Arrays.stream(ruleClass.getDeclaredMethods())
-            .map(method ->
-                recursivelyFindMethodForReturnType(new HashSet<>(), method, ruleClass))
-            .filter(Objects::nonNull)
-            .findFirst()
-            .orElseThrow(
-                () -> new NoSuchElementException("No builder method found for rule: " + ruleClass));
-
-    Method builderRuleMethod = builderRuleMethodPair.getKey();
-    Method buildRuleMethod = builderRuleMethodPair.getValue();
-
-    checkState(Modifier.isStatic(builderRuleMethod.getModifiers()),
-        "%s must be static", builderRuleMethod);
-    checkState(builderRuleMethod.getParameterTypes().length == 0,
-        "%s must have no parameters", builderRuleMethod);
-    checkState(buildRuleMethod.getParameterTypes().length == 0,
-        "%s must have no parameters", buildRuleMethod);
-
-    ImmutableMap<String, Method> newBuilderMethods = findMethodsIgnoring(buildRuleMethod.getDeclaringClass());
-    ImmutableMap<String, Method> ruleMethods = findMethodsIgnoring(ruleClass);
-
-
-    ImmutableMap.Builder<String, Method> ruleMethodBuilder = ImmutableMap.builder();
-    ImmutableMap.Builder<String, Method> ruleBuilderMethodBuilder = ImmutableMap.builder();
-    for (Map.Entry<String, Method> entry : ruleMethods.entrySet()) {
-      String methodName = entry.getKey();
-
-      ruleMethodBuilder.put(methodName, entry.getValue());
-      String capitalizedMethodName = capitalize(methodName);
-
-      Method maybeFindBuilderMethod = newBuilderMethods.get(SET_BUILDER_METHOD_START + capitalizedMethodName);
-      if (maybeFindBuilderMethod == null) {
-        throw new IllegalStateException(SET_BUILDER_METHOD_START + capitalizedMethodName);
-      }
+    Class<Rule> ruleClass = (Class<Rule>) ruleType();
 
-      checkState(maybeFindBuilderMethod.getParameterTypes().length == 1,
-          "%s must have only one parameter", maybeFindBuilderMethod);
-      Class<?> builderParameterType = maybeFindBuilderMethod.getParameterTypes()[0];
-      checkState(builderParameterType == entry.getValue().getReturnType(),
-          "parameter %s must assignable with %s",
-          builderParameterType, entry.getValue().getReturnType());
-      ruleBuilderMethodBuilder.put(methodName, maybeFindBuilderMethod);
-    }
-    this.builderMethods = ruleBuilderMethodBuilder.build();
-    this.ruleMethods = ruleMethodBuilder.build();
+    RuleSchema<Rule> generatedRuleSchema = RuleSchema.findGenerated(ruleClass);
+    this.ruleSchema = generatedRuleSchema != null ? generatedRuleSchema : new ReflectiveRuleSchema<>(ruleClass);
   }
 
   @Override
@@ -123,61 +55,41 @@ public abstract class AbstractBuilderRuleSerializer implements RuleSerializer {
     listeners.add(listener);
   }
 
-  protected ImmutableMap<String, Method> getRuleMethods() {
-    return ruleMethods;
+  protected Iterable<RuleSerializerListener> getListeners() {
+    return listeners;
   }
 
-  /** The type of rule that this serializer expects. */
-  protected abstract Class<? extends Rule> ruleType();
-
-  /** Capitalizes the given {@link String}. */
-  private static String capitalize(String s) {
-    return s.substring(0, 1).toUpperCase() + s.substring(1);
+  /** @return the properties of the rule type, with the type expected by their builder method. */
+  protected ImmutableMap<String, Class<?>> getPropertyTypes() {
+    return ruleSchema.propertyTypes();
   }
 
-  @Nullable
-  private static Pair<Method, Method> recursivelyFindMethodForReturnType(
-      Set<Class<?>> analyzedClasses, Method method, Class<?> findClass) {
-    Class<?> clazz = method.getReturnType();
-     if (analyzedClasses.contains(clazz)) {
-       return null;
-     }
-    analyzedClasses.add(clazz);
-    for (Method method1 : clazz.getDeclaredMethods()) {
-      if (findClass.isAssignableFrom(method1.getReturnType())) {
-        return Pair.create(method, method1);
-      }
-      Pair<Method, Method> findMethodForReturnType =
-          recursivelyFindMethodForReturnType(analyzedClasses, method1, findClass);
-      if (findMethodForReturnType != null) {
-        return findMethodForReturnType;
-      }
-    }
-    return null;
+  protected RuleSchema<Rule> getRuleSchema() {
+    return ruleSchema;
   }
 
-  private static ImmutableMap<String, Method> findMethodsIgnoring(Class<?> clazz) {
-    return ImmutableMap.copyOf(
-        Arrays.stream(clazz.getDeclaredMethods())
-            .filter(
-                method ->
-                    !IGNORED.contains(method)
-                        && !Modifier.isStatic(method.getModifiers()))
-            .collect(Collectors.toMap(Method::getName, Function.identity())));
-  }
+  /** The type of rule that this serializer expects. */
+  protected abstract Class<? extends Rule> ruleType();
 
   @Override
   public void serialize(Rule rule, RuleSerializerContext context) throws IOException {
 
   }
 
-  @SuppressWarnings({"unchecked", "rawtypes"})
   @Override
   public Rule deserialize(RuleSerializerContext context, @Nullable Visitor visitor) throws IOException {
+    Rule rule = build(context, visitor);
+    notifyDeserialized(rule, context);
+    return rule;
+  }
+
+  /** Creates a rule from the given context like {@link #deserialize}, but without notifying the listeners. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected Rule build(RuleSerializerContext context, @Nullable Visitor visitor) throws IOException {
     try {
-      Object newBuilder = builderRuleMethodPair.getKey().invoke(null);
-      for (Map.Entry<String, Method> entry : builderMethods.entrySet()) {
-        Class<?> needsType = entry.getValue().getParameterTypes()[0];
+      RuleSchema.Builder<Rule> builder = ruleSchema.newBuilder();
+      for (Map.Entry<String, Class<?>> entry : ruleSchema.propertyTypes().entrySet()) {
+        Class<?> needsType = entry.getValue();
         Object maybeFind = context.get(entry.getKey(), needsType);
         if (maybeFind == null) {
           if (checkForMissingFields) {
@@ -187,41 +99,27 @@ public abstract class AbstractBuilderRuleSerializer implements RuleSerializer {
         }
         Class<?> valueClass = maybeFind.getClass();
         if (!needsType.isAssignableFrom(valueClass)) {
-          Set<Class<?>> analyzedClasses = new HashSet<>();
-          maybeFind = recursivelyFindConverter(analyzedClasses, maybeFind, needsType);
-        }
-        entry.getValue().invoke(newBuilder, maybeFind);
-      }
-      Rule rule = (Rule) builderRuleMethodPair.getValue().invoke(newBuilder);
-      for (Method method : ruleMethods.values()) {
-        Object invoke = method.invoke(rule);
-        if (visitor != null) {
-          visitor.visitValue(rule, method.getName(), invoke.getClass(), invoke);
+          ObjectConverter converter = objectConverterRegistry.findConverter(valueClass, needsType);
+          if (converter != null) {
+            maybeFind = converter.convert(maybeFind);
+          }
         }
+        builder.set(entry.getKey(), maybeFind);
       }
-      for (RuleSerializerListener listener : listeners) {
-        listener.onDeserialize(rule, context);
+      Rule rule = builder.build();
+      if (visitor != null) {
+        ruleSchema.visitProperties(rule, visitor);
       }
       return rule;
-    } catch (IllegalAccessException | InvocationTargetException e) {
+    } catch (IllegalArgumentException | IllegalStateException | ClassCastException e) {
       throw new IOException(e);
     }
   }
 
-  private Object recursivelyFindConverter(
-      Set<Class<?>> analyzedClasses, Object value, Class<?> clazz) {
-    Class<?> valueClass = value.getClass();
-    if (analyzedClasses.contains(valueClass)) {
-      return value;
-    }
-    analyzedClasses.add(valueClass);
-    if (!clazz.isAssignableFrom(valueClass)) {
-      ObjectConverter converter = objectConverterRegistry.findConverter(valueClass, clazz);
-      if (converter != null) {
-        value = converter.convert(value);
-        return recursivelyFindConverter(analyzedClasses, value, clazz);
-      }
+  /** Notifies the listeners that the given rule was deserialized from the given context. */
+  protected void notifyDeserialized(Rule rule, RuleSerializerContext context) {
+    for (RuleSerializerListener listener : listeners) {
+      listener.onDeserialize(rule, context);
     }
-    return value;
   }
 }
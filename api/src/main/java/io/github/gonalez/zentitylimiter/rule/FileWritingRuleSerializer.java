@@ -17,6 +17,7 @@ package io.github.gonalez.zentitylimiter.rule;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.github.gonalez.zentitylimiter.registry.ObjectRegistry;
 import io.github.gonalez.zentitylimiter.util.converter.ObjectConverter;
@@ -25,8 +26,18 @@ import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * A {@link AbstractBuilderRuleSerializer} which adds support for writing and adding values to the
@@ -50,6 +61,12 @@ public abstract class FileWritingRuleSerializer extends AbstractBuilderRuleSeria
 
   protected ImmutableMap<Rule, RuleFileWritingInfo> rules;
 
+  // The rules loaded from each file, by absolute path
+  private final Map<Path, LoadedRuleFile> loadedRuleFiles = new ConcurrentHashMap<>();
+
+  @Nullable
+  private RuleCache ruleCache;
+
   public FileWritingRuleSerializer(
       ObjectConverter.Registry objectConverterRegistry,
       boolean checkForMissingFields, Path path,
@@ -65,6 +82,14 @@ public abstract class FileWritingRuleSerializer extends AbstractBuilderRuleSeria
     this.predefinedRules = checkNotNull(predefinedRules);
   }
 
+  /**
+   * Caches the deserialized rules in the given file, so the rule files that did not change since they were
+   * cached are not parsed again when loading the rules. Must be called before {@link #init}.
+   */
+  public void setCacheFile(Path cacheFile) {
+    this.ruleCache = new RuleCache(cacheFile, getRuleSchema());
+  }
+
   public void init() throws IOException {
     if (rules == null) {
       ImmutableMap.Builder<Rule,
@@ -86,36 +111,271 @@ public abstract class FileWritingRuleSerializer extends AbstractBuilderRuleSeria
 
           builder.put(rule, new RuleFileWritingInfo(file, context));
         }
-        this.rules = builder.build();
+      }
+      this.rules = builder.build();
+    }
+  }
+
+  /** Deserializes the rules of the path again, the pre-defined rules are not written again. */
+  public synchronized void reload() throws IOException {
+    loadedRuleFiles.clear();
+    this.rules = fetchRulesRecursively(path);
+  }
+
+  /**
+   * Deserializes only the given paths, which may be rule files or directories that were created, modified or
+   * removed. Files whose contents did not change since they were loaded are skipped, and the listeners are
+   * notified of the {@link RuleSerializerListener#onRuleUpdated updated} and
+   * {@link RuleSerializerListener#onRuleRemoved removed} rules. Each rule deserialized again replaces the rule it
+   * was deserialized from, so a listener can count the files which define each rule.
+   */
+  public synchronized void reloadFiles(Iterable<Path> changedPaths) throws IOException {
+    for (Path changedPath : changedPaths) {
+      Path absolutePath = changedPath.toAbsolutePath().normalize();
+      File file = absolutePath.toFile();
+      if (file.isDirectory()) {
+        reloadDirectory(file);
+      } else if (file.exists()) {
+        if (isRuleFile(file)) {
+          reloadFile(file);
+        }
+      } else {
+        // Either a file or a whole directory was removed
+        removeMissingFiles(absolutePath);
       }
     }
   }
 
+  private void reloadDirectory(File dir) throws IOException {
+    removeMissingFiles(absolutePath(dir));
+    List<File> ruleFiles = new ArrayList<>();
+    collectRuleFiles(dir, ruleFiles);
+    ruleFiles.sort(Comparator.comparing(File::getPath));
+    for (File file : ruleFiles) {
+      reloadFile(file);
+    }
+  }
+
+  private void reloadFile(File file) throws IOException {
+    LoadedRuleFile oldRuleFile = loadedRuleFiles.get(absolutePath(file));
+    if (oldRuleFile != null && oldRuleFile.contentHash == contentHash(file)) {
+      return;
+    }
+    ImmutableList<Rule> newRules = loadRuleFile(file).rules;
+    if (oldRuleFile == null) {
+      return;
+    }
+    // Every old rule is replaced, even if equal, since the rules of the file were all deserialized again
+    if (oldRuleFile.rules.size() == 1 && newRules.size() == 1) {
+      notifyUpdated(oldRuleFile.rules.get(0), newRules.get(0));
+      return;
+    }
+    // The rules of a bundle are matched by value, the rules which are no longer in the bundle are removed
+    List<Rule> unmatchedRules = new ArrayList<>(newRules);
+    for (Rule oldRule : oldRuleFile.rules) {
+      if (unmatchedRules.remove(oldRule)) {
+        notifyUpdated(oldRule, oldRule);
+      } else {
+        for (RuleSerializerListener listener : getListeners()) {
+          listener.onRuleRemoved(oldRule);
+        }
+      }
+    }
+  }
+
+  private void notifyUpdated(Rule oldRule, Rule newRule) {
+    for (RuleSerializerListener listener : getListeners()) {
+      listener.onRuleUpdated(oldRule, newRule);
+    }
+  }
+
+  private void removeMissingFiles(Path removedPath) {
+    Iterator<Map.Entry<Path, LoadedRuleFile>> iterator = loadedRuleFiles.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Path, LoadedRuleFile> entry = iterator.next();
+      if (entry.getKey().startsWith(removedPath) && !entry.getKey().toFile().exists()) {
+        iterator.remove();
+        for (Rule rule : entry.getValue().rules) {
+          for (RuleSerializerListener listener : getListeners()) {
+            listener.onRuleRemoved(rule);
+          }
+        }
+      }
+    }
+  }
+
+  private LoadedRuleFile loadRuleFile(File file) throws IOException {
+    LoadedRuleFile loadedRuleFile = parseRuleFile(file);
+    loadedRuleFiles.put(absolutePath(file), loadedRuleFile);
+    notifyDeserialized(loadedRuleFile);
+    return loadedRuleFile;
+  }
+
+  private void notifyDeserialized(LoadedRuleFile loadedRuleFile) {
+    for (Rule rule : loadedRuleFile.rules) {
+      notifyDeserialized(rule, loadedRuleFile.context);
+    }
+  }
+
+  /** Reads and builds the rules of the given file, the file is only parsed once. This is thread safe. */
+  private LoadedRuleFile parseRuleFile(File file) throws IOException {
+    if (isBundleFile(file)) {
+      ImmutableList<Rule> rules = readBundle(file);
+      return new LoadedRuleFile(rules, RuleSerializerContext.of(createBuilder(file).build()), contentHash(file));
+    }
+
+    RuleSerializerContext context = read(file);
+
+    ObjectRegistry.Builder builder = createBuilder(file);
+    context.merge(builder);
+
+    Rule rule = build(context, null);
+    // Hash the file after building, which may have written it
+    return new LoadedRuleFile(ImmutableList.of(rule), RuleSerializerContext.of(builder.build()), contentHash(file));
+  }
+
+  private boolean isRuleFile(File file) {
+    return file.getName().endsWith(expectedFileExtension());
+  }
+
+  private static Path absolutePath(File file) {
+    return file.toPath().toAbsolutePath().normalize();
+  }
+
+  private static int contentHash(File file) throws IOException {
+    return Arrays.hashCode(Files.readAllBytes(file.toPath()));
+  }
+
   protected abstract String expectedFileExtension();
 
+  /**
+   * @return whether the given rule file is a bundle of rules, which is read with {@link #readBundle} instead of
+   * {@link #read}. No file is a bundle by default.
+   */
+  protected boolean isBundleFile(File file) {
+    return false;
+  }
+
+  /**
+   * Reads all the rules of the given bundle file, built with {@link #build} without notifying the listeners. The
+   * bundles are not written back. This must be thread safe.
+   */
+  protected ImmutableList<Rule> readBundle(File file) throws IOException {
+    throw new IOException("Rule bundles are not supported: " + file);
+  }
+
   protected ObjectRegistry.Builder createBuilder(File file) {
     return ObjectRegistry.newBuilder().add(RULE_FILE_CONTEXT_VALUE_NAME, File.class, file);
   }
 
+  /**
+   * Deserializes all the rule files within the given directory. The files are parsed in parallel, and then the
+   * listeners are notified in the order of the file paths, so the result does not depend on the scheduling.
+   */
   private ImmutableMap<Rule, RuleFileWritingInfo> fetchRulesRecursively(
       File dir) throws IOException {
+    List<File> ruleFiles = new ArrayList<>();
+    collectRuleFiles(dir, ruleFiles);
+    ruleFiles.sort(Comparator.comparing(File::getPath));
+
+    Map<String, RuleCache.Entry> cachedRules = readCache();
+    List<LoadedRuleFile> parsedRuleFiles;
+    try {
+      parsedRuleFiles = ruleFiles.parallelStream()
+          .map(file -> {
+            try {
+              RuleCache.Entry cachedRule = cachedRules.get(relativePath(file));
+              if (cachedRule != null && isUnchanged(cachedRule, file)) {
+                return new LoadedRuleFile(
+                    cachedRule.rules, RuleSerializerContext.of(createBuilder(file).build()), cachedRule.contentHash);
+              }
+              return parseRuleFile(file);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          })
+          .collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    writeCache(ruleFiles, parsedRuleFiles, cachedRules);
+
+    Map<Rule, RuleFileWritingInfo> rules = new LinkedHashMap<>();
+    for (int i = 0; i < ruleFiles.size(); i++) {
+      File file = ruleFiles.get(i);
+      LoadedRuleFile loadedRuleFile = parsedRuleFiles.get(i);
+      loadedRuleFiles.put(absolutePath(file), loadedRuleFile);
+      notifyDeserialized(loadedRuleFile);
+      for (Rule rule : loadedRuleFile.rules) {
+        rules.put(rule, new RuleFileWritingInfo(file, loadedRuleFile.context));
+      }
+    }
+    return ImmutableMap.copyOf(rules);
+  }
+
+  private Map<String, RuleCache.Entry> readCache() {
+    if (ruleCache == null) {
+      return ImmutableMap.of();
+    }
+    try {
+      return ruleCache.read();
+    } catch (IOException e) {
+      // The cache is invalid, all the files are parsed and the cache is written again
+      return ImmutableMap.of();
+    }
+  }
+
+  private void writeCache(
+      List<File> ruleFiles, List<LoadedRuleFile> parsedRuleFiles, Map<String, RuleCache.Entry> cachedRules) {
+    if (ruleCache == null) {
+      return;
+    }
+    boolean changed = cachedRules.size() != ruleFiles.size();
+    List<RuleCache.Entry> entries = new ArrayList<>(ruleFiles.size());
+    for (int i = 0; i < ruleFiles.size(); i++) {
+      File file = ruleFiles.get(i);
+      String relativePath = relativePath(file);
+      LoadedRuleFile loadedRuleFile = parsedRuleFiles.get(i);
+      RuleCache.Entry cachedRule = cachedRules.get(relativePath);
+      if (cachedRule == null || cachedRule.rules != loadedRuleFile.rules) {
+        changed = true;
+        cachedRule = new RuleCache.Entry(
+            relativePath, file.lastModified(), file.length(), loadedRuleFile.contentHash, loadedRuleFile.rules);
+      }
+      entries.add(cachedRule);
+    }
+    if (!changed) {
+      return;
+    }
+    try {
+      ruleCache.write(entries);
+    } catch (IOException e) {
+      // The rules are just parsed again on the next load
+    }
+  }
+
+  private static boolean isUnchanged(RuleCache.Entry cachedRule, File file) throws IOException {
+    return cachedRule.lastModified == file.lastModified()
+        && cachedRule.size == file.length()
+        && cachedRule.contentHash == contentHash(file);
+  }
+
+  private String relativePath(File file) {
+    return path.toPath().relativize(file.toPath()).toString();
+  }
+
+  private void collectRuleFiles(File dir, List<File> ruleFiles) {
     File[] files = dir.listFiles();
-    ImmutableMap.Builder<Rule, RuleFileWritingInfo> ruleFileBuilder = ImmutableMap.builder();
     if (files == null) {
-      return ruleFileBuilder.build();
+      return;
     }
     for (File file : files) {
-        RuleSerializerContext context = read(file);
-
-        ObjectRegistry.Builder builder = createBuilder(file);
-        context.merge(builder);
-
-        ruleFileBuilder.put(deserialize(context, null),
-            new RuleFileWritingInfo(file,
-                RuleSerializerContext.of(builder.build())));
-      ruleFileBuilder.putAll(fetchRulesRecursively(file));
+      if (file.isDirectory()) {
+        collectRuleFiles(file, ruleFiles);
+      } else if (isRuleFile(file)) {
+        ruleFiles.add(file);
+      }
     }
-    return ruleFileBuilder.build();
   }
 
   protected abstract RuleSerializerContext read(File file);
@@ -133,11 +393,17 @@ public abstract class FileWritingRuleSerializer extends AbstractBuilderRuleSeria
     super.serialize(rule, read(file));
   }
 
-  @Override
-  public Rule deserialize(RuleSerializerContext context, @Nullable Visitor visitor) throws IOException {
-    Rule findRule = super.deserialize(context, visitor);
-    read(getFile(findRule, context));
-    return findRule;
+  /** The rules loaded from a file, and the hash of the file contents when it was loaded. */
+  private static class LoadedRuleFile {
+    final ImmutableList<Rule> rules;
+    final RuleSerializerContext context;
+    final int contentHash;
+
+    LoadedRuleFile(ImmutableList<Rule> rules, RuleSerializerContext context, int contentHash) {
+      this.rules = rules;
+      this.context = context;
+      this.contentHash = contentHash;
+    }
   }
 
   /** Information about a rule for writing. */
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * {@link RuleCollection.RuleCollectionFinder} which finds all the rules whose {@link Rule#allowedEntities()} contain
+ * the type of the entity, and whose {@link Rule#allowedWorlds()} contain the world of the entity, or are empty.
+ *
+ * <p>The rules are indexed by entity type and world for each {@link RuleCollection#getVersion() version} of the
+ * rules, the world names are resolved using {@code worldFunction} when indexing. The index must be
+ * {@link #invalidate() invalidated} when a world is loaded or unloaded, so the rules match the worlds loaded later.
+ * Unknown entity types are skipped with a warning.
+ */
+public class IndexedRuleCollectionFinder implements RuleCollection.RuleCollectionFinder {
+  /** The rules of a {@link RuleCollection#getVersion() version} of the rule collection, indexed. */
+  private static final class Index {
+    final long version;
+    // The rules without allowed worlds
+    final EnumMap<EntityType, ImmutableList<Rule>> globalRules;
+    // The rules of each world, including the global rules
+    final ImmutableMap<UUID, EnumMap<EntityType, ImmutableList<Rule>>> worldRules;
+
+    Index(
+        long version,
+        EnumMap<EntityType, ImmutableList<Rule>> globalRules,
+        ImmutableMap<UUID, EnumMap<EntityType, ImmutableList<Rule>>> worldRules) {
+      this.version = version;
+      this.globalRules = globalRules;
+      this.worldRules = worldRules;
+    }
+  }
+
+  private final RuleCollection ruleCollection;
+  private final Function<String, World> worldFunction;
+  private final Logger logger;
+
+  private volatile Index index;
+  // Whether the worlds changed since the index was created
+  private volatile boolean invalidated;
+
+  public IndexedRuleCollectionFinder(
+      RuleCollection ruleCollection,
+      Function<String, World> worldFunction,
+      Logger logger) {
+    this.ruleCollection = checkNotNull(ruleCollection);
+    this.worldFunction = checkNotNull(worldFunction);
+    this.logger = checkNotNull(logger);
+    this.index = createIndex();
+  }
+
+  /** Indexes the rules again on the next lookup, this must be called when a world is loaded or unloaded. */
+  public void invalidate() {
+    invalidated = true;
+  }
+
+  private Index createIndex() {
+    // Read the version first, so rules that change while indexing cause another index
+    long version = ruleCollection.getVersion();
+    Map<EntityType, List<Rule>> globalRuleLists = new EnumMap<>(EntityType.class);
+    Map<UUID, Map<EntityType, List<Rule>>> worldRuleLists = new HashMap<>();
+    for (Rule rule : ruleCollection.getRules()) {
+      if (rule.allowedWorlds().isEmpty()) {
+        addRule(globalRuleLists, rule);
+        continue;
+      }
+      for (String worldName : rule.allowedWorlds()) {
+        World world = worldFunction.apply(worldName);
+        if (world != null) {
+          addRule(worldRuleLists.computeIfAbsent(world.getUID(), id -> new EnumMap<>(EntityType.class)), rule);
+        }
+      }
+    }
+
+    ImmutableMap.Builder<UUID, EnumMap<EntityType, ImmutableList<Rule>>> worldRulesBuilder = ImmutableMap.builder();
+    for (Map.Entry<UUID, Map<EntityType, List<Rule>>> worldEntry : worldRuleLists.entrySet()) {
+      worldRulesBuilder.put(worldEntry.getKey(), build(worldEntry.getValue(), globalRuleLists));
+    }
+    return new Index(version, build(globalRuleLists, ImmutableMap.of()), worldRulesBuilder.build());
+  }
+
+  private Index getIndex() {
+    Index index = this.index;
+    if (invalidated || index.version != ruleCollection.getVersion()) {
+      synchronized (this) {
+        index = this.index;
+        if (invalidated || index.version != ruleCollection.getVersion()) {
+          // Cleared first, so worlds that change while indexing cause another index
+          invalidated = false;
+          this.index = index = createIndex();
+        }
+      }
+    }
+    return index;
+  }
+
+  private void addRule(Map<EntityType, List<Rule>> ruleLists, Rule rule) {
+    for (String allowedEntity : rule.allowedEntities()) {
+      EntityType entityType;
+      try {
+        entityType = EntityType.valueOf(allowedEntity);
+      } catch (IllegalArgumentException e) {
+        logger.warning("Unknown entity type " + allowedEntity + " in rule: " + rule);
+        continue;
+      }
+      List<Rule> rules = ruleLists.computeIfAbsent(entityType, type -> new ArrayList<>());
+      // A rule could list the same entity type twice
+      if (!rules.contains(rule)) {
+        rules.add(rule);
+      }
+    }
+  }
+
+  private static EnumMap<EntityType, ImmutableList<Rule>> build(
+      Map<EntityType, List<Rule>> ruleLists, Map<EntityType, List<Rule>> globalRuleLists) {
+    EnumMap<EntityType, ImmutableList<Rule>> rules = new EnumMap<>(EntityType.class);
+    for (EntityType entityType : EntityType.values()) {
+      ImmutableList.Builder<Rule> builder = ImmutableList.builder();
+      // The rules of the world come first, as they are more specific
+      List<Rule> typeRules = ruleLists.get(entityType);
+      if (typeRules != null) {
+        builder.addAll(typeRules);
+      }
+      List<Rule> globalTypeRules = globalRuleLists.get(entityType);
+      if (globalTypeRules != null) {
+        builder.addAll(globalTypeRules);
+      }
+      ImmutableList<Rule> allTypeRules = builder.build();
+      if (!allTypeRules.isEmpty()) {
+        rules.put(entityType, allTypeRules);
+      }
+    }
+    return rules;
+  }
+
+  @Nullable
+  @Override
+  public Rule findRule(Entity entity) {
+    ImmutableList<Rule> rules = findRules(entity);
+    return rules.isEmpty() ? null : rules.get(0);
+  }
+
+  @Override
+  public ImmutableList<Rule> findRules(Entity entity) {
+    Index index = getIndex();
+    EnumMap<EntityType, ImmutableList<Rule>> rules = index.globalRules;
+    if (!index.worldRules.isEmpty()) {
+      EnumMap<EntityType, ImmutableList<Rule>> maybeWorldRules = index.worldRules.get(entity.getWorld().getUID());
+      if (maybeWorldRules != null) {
+        rules = maybeWorldRules;
+      }
+    }
+    ImmutableList<Rule> typeRules = rules.get(entity.getType());
+    return typeRules == null ? ImmutableList.of() : typeRules;
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.github.gonalez.zentitylimiter.util.Pair;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link RuleSchema} which finds the builder of the rule with reflection, for the rule types without a
+ * {@link GenerateRuleSchema generated} schema. The rule type must have a static method which returns its builder,
+ * and the builder a {@code set} method for each property of the rule.
+ */
+class ReflectiveRuleSchema<R extends Rule> implements RuleSchema<R> {
+  // Defines which characters a rule builder method should start with
+  static final String SET_BUILDER_METHOD_START = "set";
+
+  private static final ImmutableSet<Method> IGNORED =
+      ImmutableSet.<Method>builder()
+          .add(Object.class.getDeclaredMethods())
+          .build();
+
+  private final Pair</*builder=*/Method, /*rule=*/Method> builderRuleMethodPair;
+
+  private final ImmutableMap<String, Method> ruleMethods;
+  private final ImmutableMap<String, Method> builderMethods;
+  private final ImmutableMap<String, Class<?>> propertyTypes;
+
+  ReflectiveRuleSchema(Class<R> ruleClass) {
+    builderRuleMethodPair =
+        Arrays.stream(ruleClass.getDeclaredMethods())
+            .map(method ->
+                recursivelyFindMethodForReturnType(new HashSet<>(), method, ruleClass))
+            .filter(Objects::nonNull)
+            .findFirst()
+            .orElseThrow(
+                () -> new NoSuchElementException("No builder method found for rule: " + ruleClass));
+
+    Method builderRuleMethod = builderRuleMethodPair.getKey();
+    Method buildRuleMethod = builderRuleMethodPair.getValue();
+
+    checkState(Modifier.isStatic(builderRuleMethod.getModifiers()),
+        "%s must be static", builderRuleMethod);
+    checkState(builderRuleMethod.getParameterTypes().length == 0,
+        "%s must have no parameters", builderRuleMethod);
+    checkState(buildRuleMethod.getParameterTypes().length == 0,
+        "%s must have no parameters", buildRuleMethod);
+
+    ImmutableMap<String, Method> newBuilderMethods = findMethodsIgnoring(buildRuleMethod.getDeclaringClass());
+    ImmutableMap<String, Method> ruleMethods = findMethodsIgnoring(ruleClass);
+
+    ImmutableMap.Builder<String, Method> ruleMethodBuilder = ImmutableMap.builder();
+    ImmutableMap.Builder<String, Method> ruleBuilderMethodBuilder = ImmutableMap.builder();
+    ImmutableMap.Builder<String, Class<?>> propertyTypeBuilder = ImmutableMap.builder();
+    for (Map.Entry<String, Method> entry : ruleMethods.entrySet()) {
+      String methodName = entry.getKey();
+
+      ruleMethodBuilder.put(methodName, entry.getValue());
+      String capitalizedMethodName = capitalize(methodName);
+
+      Method maybeFindBuilderMethod = newBuilderMethods.get(SET_BUILDER_METHOD_START + capitalizedMethodName);
+      if (maybeFindBuilderMethod == null) {
+        throw new IllegalStateException(SET_BUILDER_METHOD_START + capitalizedMethodName);
+      }
+
+      checkState(maybeFindBuilderMethod.getParameterTypes().length == 1,
+          "%s must have only one parameter", maybeFindBuilderMethod);
+      Class<?> builderParameterType = maybeFindBuilderMethod.getParameterTypes()[0];
+      checkState(builderParameterType == entry.getValue().getReturnType(),
+          "parameter %s must assignable with %s",
+          builderParameterType, entry.getValue().getReturnType());
+      ruleBuilderMethodBuilder.put(methodName, maybeFindBuilderMethod);
+      propertyTypeBuilder.put(methodName, builderParameterType);
+    }
+    this.builderMethods = ruleBuilderMethodBuilder.build();
+    this.ruleMethods = ruleMethodBuilder.build();
+    this.propertyTypes = propertyTypeBuilder.build();
+  }
+
+  /** Capitalizes the given {@link String}. */
+  private static String capitalize(String s) {
+    return s.substring(0, 1).toUpperCase(Locale.ROOT) + s.substring(1);
+  }
+
+  @Nullable
+  private static Pair<Method, Method> recursivelyFindMethodForReturnType(
+      Set<Class<?>> analyzedClasses, Method method, Class<?> findClass) {
+    Class<?> clazz = method.getReturnType();
+     if (analyzedClasses.contains(clazz)) {
+       return null;
+     }
+    analyzedClasses.add(clazz);
+    for (Method method1 : clazz.getDeclaredMethods()) {
+      if (findClass.isAssignableFrom(method1.getReturnType())) {
+        return Pair.create(method, method1);
+      }
+      Pair<Method, Method> findMethodForReturnType =
+          recursivelyFindMethodForReturnType(analyzedClasses, method1, findClass);
+      if (findMethodForReturnType != null) {
+        return findMethodForReturnType;
+      }
+    }
+    return null;
+  }
+
+  private static ImmutableMap<String, Method> findMethodsIgnoring(Class<?> clazz) {
+    return ImmutableMap.copyOf(
+        Arrays.stream(clazz.getDeclaredMethods())
+            .filter(
+                method ->
+                    !IGNORED.contains(method)
+                        && !Modifier.isStatic(method.getModifiers()))
+            .collect(Collectors.toMap(Method::getName, Function.identity())));
+  }
+
+  @Override
+  public ImmutableMap<String, Class<?>> propertyTypes() {
+    return propertyTypes;
+  }
+
+  @Override
+  public Builder<R> newBuilder() {
+    Object newBuilder = invoke(builderRuleMethodPair.getKey(), null);
+    return new Builder<R>() {
+      @Override
+      public void set(String property, Object value) {
+        Method builderMethod = builderMethods.get(property);
+        if (builderMethod == null) {
+          throw new IllegalArgumentException("Unknown rule property: " + property);
+        }
+        invoke(builderMethod, newBuilder, value);
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public R build() {
+        return (R) invoke(builderRuleMethodPair.getValue(), newBuilder);
+      }
+    };
+  }
+
+  @Override
+  public void visitProperties(R rule, RuleSerializer.Visitor visitor) {
+    for (Method method : ruleMethods.values()) {
+      Object invoke = invoke(method, rule);
+      visitor.visitValue(rule, method.getName(), invoke.getClass(), invoke);
+    }
+  }
+
+  private static Object invoke(Method method, @Nullable Object target, Object... args) {
+    try {
+      return method.invoke(target, args);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    } catch (InvocationTargetException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableMap;
 
 
 @AutoValue
+@GenerateRuleSchema
 public abstract class Rule {
   public static Builder newBuilder() {
     return new AutoValue_Rule.Builder()
@@ -28,6 +29,7 @@ public abstract class Rule {
         .setAllowedWorlds(ImmutableList.of())
         .setRadius(3)
         .setMaxAmount(5)
+        .setMaxAmountPerChunk(-1)
         .setOptions(ImmutableMap.of("tamed", true))
         .setRecursively(true);
   }
@@ -37,6 +39,8 @@ public abstract class Rule {
 
   public abstract double radius();
   public abstract int maxAmount();
+  // The maximum amount of entities of each allowed type in a chunk, or -1 for no limit
+  public abstract int maxAmountPerChunk();
 
   public abstract ImmutableMap<String, Object> options();
 
@@ -49,6 +53,7 @@ public abstract class Rule {
 
     public abstract Builder setRadius(double radius);
     public abstract Builder setMaxAmount(int maxAmount);
+    public abstract Builder setMaxAmountPerChunk(int maxAmountPerChunk);
 
     public abstract Builder setOptions(ImmutableMap<String, Object> options);
 
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A binary snapshot of the rules deserialized from the rule files, so they can be loaded again without parsing
+ * the files. Each cached rule is only valid while its file has the same modification time, size and content hash.
+ *
+ * <p>The cache is read by memory-mapping the cache file. Any error reading or writing the cache is ignored by the
+ * callers, in that case the rule files are just parsed again.
+ */
+final class RuleCache {
+  private static final int MAGIC = 0x5A454C43; // ZELC
+  private static final int FORMAT_VERSION = 2;
+
+  // Value tags
+  private static final byte STRING = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte INT = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte LIST = 5;
+  private static final byte MAP = 6;
+
+  /** The rules of a file and the state of the file when they were deserialized. */
+  static final class Entry {
+    final String path;
+    final long lastModified;
+    final long size;
+    final int contentHash;
+    final ImmutableList<Rule> rules;
+
+    Entry(String path, long lastModified, long size, int contentHash, ImmutableList<Rule> rules) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.size = size;
+      this.contentHash = contentHash;
+      this.rules = rules;
+    }
+  }
+
+  private final Path cacheFile;
+  private final RuleSchema<Rule> ruleSchema;
+  // Invalidates the cache when the properties of the rule type change
+  private final int schemaHash;
+
+  RuleCache(Path cacheFile, RuleSchema<Rule> ruleSchema) {
+    this.cacheFile = checkNotNull(cacheFile);
+    this.ruleSchema = checkNotNull(ruleSchema);
+    this.schemaHash = new TreeMap<>(ruleSchema.propertyTypes()).toString().hashCode();
+  }
+
+  /** @return the cached entries by path, empty if there is no valid cache. */
+  Map<String, Entry> read() throws IOException {
+    if (!Files.isRegularFile(cacheFile)) {
+      return ImmutableMap.of();
+    }
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getInt() != schemaHash) {
+        return ImmutableMap.of();
+      }
+      int entryCount = buffer.getInt();
+      Map<String, Entry> entries = new HashMap<>(entryCount * 2);
+      for (int i = 0; i < entryCount; i++) {
+        String path = readString(buffer);
+        long lastModified = buffer.getLong();
+        long size = buffer.getLong();
+        int contentHash = buffer.getInt();
+        int ruleCount = buffer.getInt();
+        ImmutableList.Builder<Rule> rules = ImmutableList.builder();
+        for (int j = 0; j < ruleCount; j++) {
+          RuleSchema.Builder<Rule> builder = ruleSchema.newBuilder();
+          int propertyCount = buffer.getInt();
+          for (int k = 0; k < propertyCount; k++) {
+            builder.set(readString(buffer), readValue(buffer));
+          }
+          rules.add(builder.build());
+        }
+        entries.put(path, new Entry(path, lastModified, size, contentHash, rules.build()));
+      }
+      return entries;
+    } catch (RuntimeException e) {
+      throw new IOException("Invalid rule cache: " + cacheFile, e);
+    }
+  }
+
+  /** Replaces the cache with the given entries, the previous cache is kept if writing fails. */
+  void write(List<Entry> entries) throws IOException {
+    Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(FORMAT_VERSION);
+      output.writeInt(schemaHash);
+      output.writeInt(entries.size());
+      for (Entry entry : entries) {
+        writeString(output, entry.path);
+        output.writeLong(entry.lastModified);
+        output.writeLong(entry.size);
+        output.writeInt(entry.contentHash);
+        output.writeInt(entry.rules.size());
+        for (Rule entryRule : entry.rules) {
+          List<Object> properties = new ArrayList<>();
+          ruleSchema.visitProperties(entryRule, (rule, valueName, valueType, value) -> {
+            properties.add(valueName);
+            properties.add(value);
+          });
+          output.writeInt(properties.size() / 2);
+          for (int i = 0; i < properties.size(); i += 2) {
+            writeString(output, (String) properties.get(i));
+            writeValue(output, properties.get(i + 1));
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tempFile);
+      throw e;
+    }
+    Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(MappedByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeValue(DataOutputStream output, Object value) throws IOException {
+    if (value instanceof String) {
+      output.writeByte(STRING);
+      writeString(output, (String) value);
+    } else if (value instanceof Boolean) {
+      output.writeByte(BOOLEAN);
+      output.writeBoolean((Boolean) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(INT);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG);
+      output.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      output.writeByte(LIST);
+      output.writeInt(list.size());
+      for (Object element : list) {
+        writeValue(output, element);
+      }
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      output.writeByte(MAP);
+      output.writeInt(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeString(output, String.valueOf(entry.getKey()));
+        writeValue(output, entry.getValue());
+      }
+    } else {
+      throw new IOException("Cannot cache rule value: " + value);
+    }
+  }
+
+  private static Object readValue(MappedByteBuffer buffer) {
+    byte tag = buffer.get();
+    switch (tag) {
+      case STRING:
+        return readString(buffer);
+      case BOOLEAN:
+        return buffer.get() != 0;
+      case INT:
+        return buffer.getInt();
+      case LONG:
+        return buffer.getLong();
+      case DOUBLE:
+        return buffer.getDouble();
+      case LIST: {
+        int size = buffer.getInt();
+        ImmutableList.Builder<Object> list = ImmutableList.builder();
+        for (int i = 0; i < size; i++) {
+          list.add(readValue(buffer));
+        }
+        return list.build();
+      }
+      case MAP: {
+        int size = buffer.getInt();
+        ImmutableMap.Builder<String, Object> map = ImmutableMap.builder();
+        for (int i = 0; i < size; i++) {
+          map.put(readString(buffer), readValue(buffer));
+        }
+        return map.build();
+      }
+      default:
+        throw new IllegalStateException("Unknown value tag: " + tag);
+    }
+  }
+}
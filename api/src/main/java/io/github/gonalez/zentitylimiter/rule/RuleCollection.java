@@ -15,6 +15,7 @@
  */
 package io.github.gonalez.zentitylimiter.rule;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.bukkit.entity.Entity;
 
@@ -27,11 +28,25 @@ public interface RuleCollection {
 
     @Nullable
     Rule findRule(Entity entity);
+
+    /** @return all the rules of the entity, by default only the {@link #findRule found} rule. */
+    default ImmutableList<Rule> findRules(Entity entity) {
+      Rule rule = findRule(entity);
+      return rule == null ? ImmutableList.of() : ImmutableList.of(rule);
+    }
   }
 
   /** @return all rules that this collection has. */
   ImmutableSet<Rule> getRules();
 
+  /**
+   * @return the version of the {@link #getRules() rules}, which changes every time the rules change. Useful
+   * for caching things computed from the rules, by default the rules never change.
+   */
+  default long getVersion() {
+    return 0;
+  }
+
   /** Invalidates any caches present in this collection. */
   void invalidateCaches();
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.LinkedHashSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Watches the rule files of a {@link FileWritingRuleSerializer} and {@link FileWritingRuleSerializer#reloadFiles
+ * reloads} only the files that were created, modified or removed.
+ *
+ * <p>Editors usually write a file in several steps, so the changes are collected until no new change happens
+ * for {@code debounceMillis}, and then all of them are reloaded at once. If the watch service lost events, the
+ * whole directory is reloaded instead.
+ */
+public class RuleFileWatcher implements Closeable {
+  /** Reloads the rule files that changed. */
+  @FunctionalInterface
+  public interface Reloader {
+    /** @see FileWritingRuleSerializer#reloadFiles(Iterable) */
+    void reloadFiles(Iterable<Path> changedPaths) throws IOException;
+  }
+
+  private final Path path;
+  private final Reloader reloader;
+  private final long debounceMillis;
+  private final Logger logger;
+
+  private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+
+  @Nullable
+  private WatchService watchService;
+  @Nullable
+  private Thread thread;
+
+  public RuleFileWatcher(
+      Path path,
+      FileWritingRuleSerializer ruleSerializer,
+      long debounceMillis,
+      Logger logger) {
+    this(path, checkNotNull(ruleSerializer)::reloadFiles, debounceMillis, logger);
+  }
+
+  /** Creates a new watcher that passes the changed files to the given reloader instead of the serializer. */
+  public RuleFileWatcher(
+      Path path,
+      Reloader reloader,
+      long debounceMillis,
+      Logger logger) {
+    checkArgument(debounceMillis >= 0, "debounceMillis cannot be negative");
+    this.path = checkNotNull(path).toAbsolutePath().normalize();
+    this.reloader = checkNotNull(reloader);
+    this.debounceMillis = debounceMillis;
+    this.logger = checkNotNull(logger);
+  }
+
+  /** Starts watching the rule files on a new daemon thread. */
+  public synchronized void start() throws IOException {
+    if (thread != null) {
+      return;
+    }
+    watchService = path.getFileSystem().newWatchService();
+    watchAll(path);
+
+    thread = new Thread(this::watch, "zEntityLimiter rule watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (thread == null) {
+      return;
+    }
+    thread.interrupt();
+    thread = null;
+    watchService.close();
+    watchedDirs.clear();
+  }
+
+  private void watchAll(Path dir) throws IOException {
+    try (Stream<Path> dirs = Files.walk(dir)) {
+      for (Path watchDir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+        watchedDirs.put(watchDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), watchDir);
+      }
+    }
+  }
+
+  private void watch() {
+    WatchService watchService = this.watchService;
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        Set<Path> changedPaths = new LinkedHashSet<>();
+        boolean overflow = false;
+
+        WatchKey key = watchService.take();
+        do {
+          Path dir = watchedDirs.get(key);
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+              overflow = true;
+              continue;
+            }
+            Path changedPath = dir.resolve((Path) event.context());
+            changedPaths.add(changedPath);
+            // Watch the new directories too, the files created in them meanwhile are reloaded with the directory
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(changedPath)) {
+              watchAll(changedPath);
+            }
+          }
+          if (!key.reset()) {
+            watchedDirs.remove(key);
+          }
+        } while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null);
+
+        try {
+          reloader.reloadFiles(overflow ? ImmutableList.of(path) : changedPaths);
+        } catch (IOException | RuntimeException e) {
+          logger.log(Level.WARNING, "Could not reload the changed rule files", e);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // Closed
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not watch the rule files", e);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes rule files on the given executor. Each file is written to a temporary file first, which then replaces the
+ * file atomically, so a file is never left half written.
+ *
+ * <p>The writes requested while a previous batch is being written are coalesced into the next batch, and only the
+ * last contents requested for a file are written.
+ */
+public class RuleFileWriter implements Closeable {
+  private final Executor executor;
+  private final Logger logger;
+
+  // The contents to write to each file, guarded by this
+  private Map<File, String> pendingWrites = new LinkedHashMap<>();
+  private boolean flushScheduled;
+
+  // Held while writing, so the writes of a file happen in the order they were requested
+  private final Object writeLock = new Object();
+
+  public RuleFileWriter(Executor executor, Logger logger) {
+    this.executor = checkNotNull(executor);
+    this.logger = checkNotNull(logger);
+  }
+
+  /** Writes the given contents to the file on the executor, replacing any pending write of the file. */
+  public void write(File file, String contents) {
+    synchronized (this) {
+      pendingWrites.put(checkNotNull(file), checkNotNull(contents));
+      if (flushScheduled) {
+        return;
+      }
+      flushScheduled = true;
+    }
+    executor.execute(this::flush);
+  }
+
+  /** Writes all the pending writes on the calling thread. */
+  public void flush() {
+    synchronized (writeLock) {
+      Map<File, String> writes;
+      synchronized (this) {
+        writes = pendingWrites;
+        pendingWrites = new LinkedHashMap<>();
+        flushScheduled = false;
+      }
+      for (Map.Entry<File, String> write : writes.entrySet()) {
+        try {
+          writeAtomically(write.getKey().toPath(), write.getValue());
+        } catch (IOException e) {
+          logger.log(Level.WARNING, "Could not write rule file: " + write.getKey(), e);
+        }
+      }
+    }
+  }
+
+  private static void writeAtomically(Path file, String contents) throws IOException {
+    Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      Files.write(tempFile, contents.getBytes(StandardCharsets.UTF_8));
+      try {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /** Writes the pending writes, this must be called once no more writes are requested. */
+  @Override
+  public void close() {
+    flush();
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * The properties of a {@link Rule} type, to create and read the rules without reflection. Implementations are
+ * generated at compile time for the rule types annotated with {@link GenerateRuleSchema}.
+ *
+ * @param <R> the rule type
+ */
+public interface RuleSchema<R extends Rule> {
+  /** Suffix of the generated schemas, which are named after the rule type like {@code Rule_RuleSchema}. */
+  String GENERATED_SUFFIX = "_RuleSchema";
+
+  /** @return the properties of the rule, with the type expected by their builder method. */
+  ImmutableMap<String, Class<?>> propertyTypes();
+
+  /** @return a new builder of the rule, with the defaults of the rule type. */
+  Builder<R> newBuilder();
+
+  /** Visits all the properties of the given rule. */
+  void visitProperties(R rule, RuleSerializer.Visitor visitor);
+
+  /** Builds a rule by setting its properties by name. */
+  interface Builder<R extends Rule> {
+    /** Sets the given property, the value must be of the {@link #propertyTypes property type}. */
+    void set(String property, Object value);
+
+    R build();
+  }
+
+  /** @return the schema generated for the given rule type, or {@code null} if it was not generated. */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  static <R extends Rule> RuleSchema<R> findGenerated(Class<R> ruleType) {
+    String packageName = ruleType.getPackage() == null ? "" : ruleType.getPackage().getName();
+    String name = ruleType.getName().substring(packageName.isEmpty() ? 0 : packageName.length() + 1);
+    try {
+      Class<?> schemaClass = Class.forName(
+          (packageName.isEmpty() ? "" : packageName + ".") + name.replace('$', '_') + GENERATED_SUFFIX,
+          true, ruleType.getClassLoader());
+      return (RuleSchema<R>) schemaClass.getConstructor().newInstance();
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create the schema of " + ruleType, e);
+    }
+  }
+}
@@ -22,4 +22,13 @@ public interface RuleSerializerListener {
 
   /** Called when deserializing a rule. */
   default void onDeserialize(Rule rule, RuleSerializerContext context) {}
+
+  /**
+   * Called when the file of {@code oldRule} changed to {@code newRule}, after {@link #onDeserialize deserializing}
+   * the new rule. Both rules may be equal, if the file changed but the rule did not.
+   */
+  default void onRuleUpdated(Rule oldRule, Rule newRule) {}
+
+  /** Called when the file of a rule was removed. */
+  default void onRuleRemoved(Rule rule) {}
 }
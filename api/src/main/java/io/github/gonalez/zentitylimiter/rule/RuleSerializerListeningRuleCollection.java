@@ -19,12 +19,62 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.collect.ImmutableSet;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
-/** Registers a listener on the {@code ruleSerializer} to add a new rule to this collection when deserializing. */
+/**
+ * Registers a listener on the {@code ruleSerializer} to add a new rule to this collection when deserializing.
+ *
+ * <p>The rules are published as immutable, versioned snapshots through a single volatile reference, so reading
+ * them never blocks nor allocates. Rules deserialized during a {@link #reload} are only published once the
+ * reload completes, until then the previous rules are still visible. The rules can also be loaded on one thread
+ * and published later by an {@link Executor}, such as the server thread.
+ *
+ * <p>Rules {@link RuleSerializerListener#onRuleUpdated updated} or
+ * {@link RuleSerializerListener#onRuleRemoved removed} by the serializer are removed from this collection. The
+ * changes made by an {@link #update} are published at once, so the old and the new version of an updated rule
+ * are never visible together. Equal rules deserialized from several files are counted, so a rule is only removed
+ * once no file defines it.
+ */
 public class RuleSerializerListeningRuleCollection implements RuleCollection {
-  private final Queue<Rule> serializedRules = new ConcurrentLinkedQueue<>();
+  /** Loads the rules of a {@link #reload}, by deserializing them. */
+  public interface Loader {
+    void load() throws IOException;
+  }
+
+  /** The rules of a version of this collection. */
+  private static final class Snapshot {
+    final long version;
+    final ImmutableSet<Rule> rules;
+
+    Snapshot(long version, ImmutableSet<Rule> rules) {
+      this.version = version;
+      this.rules = rules;
+    }
+  }
+
+  private volatile Snapshot snapshot = new Snapshot(0, ImmutableSet.of());
+
+  // The number of times each rule of the snapshot was deserialized and not removed, guarded by this collection
+  private final Map<Rule, Integer> ruleCounts = new LinkedHashMap<>();
+
+  /** The rules deserialized and removed meanwhile a {@link #reload} or an {@link #update}. */
+  private static final class Batch {
+    final Queue<Rule> addedRules = new ConcurrentLinkedQueue<>();
+    final Queue<Rule> removedRules = new ConcurrentLinkedQueue<>();
+  }
+
+  // Loads one batch at a time, so the batches are published in the order they were loaded
+  private final Object loadLock = new Object();
+
+  // The batch of the reload or update in progress, if any
+  @Nullable
+  private volatile Batch batch;
 
   public RuleSerializerListeningRuleCollection(
       RuleSerializer ruleSerializer) {
@@ -33,18 +83,147 @@ public class RuleSerializerListeningRuleCollection implements RuleCollection {
         new RuleSerializerListener() {
           @Override
           public void onDeserialize(Rule rule, RuleSerializerContext context) {
-            serializedRules.add(rule);
+            Batch batch = RuleSerializerListeningRuleCollection.this.batch;
+            if (batch != null) {
+              batch.addedRules.add(rule);
+            } else {
+              addRule(rule);
+            }
+          }
+
+          @Override
+          public void onRuleUpdated(Rule oldRule, Rule newRule) {
+            // The new rule is added when deserialized
+            onRuleRemoved(oldRule);
+          }
+
+          @Override
+          public void onRuleRemoved(Rule rule) {
+            Batch batch = RuleSerializerListeningRuleCollection.this.batch;
+            if (batch != null) {
+              batch.removedRules.add(rule);
+            } else {
+              removeRule(rule);
+            }
           }
         });
   }
 
+  private synchronized void addRule(Rule rule) {
+    if (ruleCounts.merge(rule, 1, Integer::sum) == 1) {
+      publish();
+    }
+  }
+
+  private synchronized void removeRule(Rule rule) {
+    if (decrement(rule)) {
+      publish();
+    }
+  }
+
+  // Must hold the lock of this collection, returns whether the rule is no longer in this collection
+  private boolean decrement(Rule rule) {
+    Integer count = ruleCounts.get(rule);
+    if (count == null) {
+      return false;
+    }
+    if (count == 1) {
+      ruleCounts.remove(rule);
+      return true;
+    }
+    ruleCounts.put(rule, count - 1);
+    return false;
+  }
+
+  // Must hold the lock of this collection
+  private void publish() {
+    snapshot = new Snapshot(snapshot.version + 1, ImmutableSet.copyOf(ruleCounts.keySet()));
+  }
+
+  /**
+   * Replaces all the rules of this collection with the rules deserialized by {@code loader}. If the loader
+   * fails, the rules are left unchanged.
+   */
+  public void reload(Loader loader) throws IOException {
+    reload(loader, Runnable::run);
+  }
+
+  /**
+   * Replaces all the rules of this collection with the rules deserialized by {@code loader}, which are published
+   * by {@code publisher}. If the loader fails, nothing is published.
+   */
+  public void reload(Loader loader, Executor publisher) throws IOException {
+    synchronized (loadLock) {
+      Batch batch = runBatch(loader);
+      publisher.execute(() -> replaceRules(batch));
+    }
+  }
+
+  /**
+   * Applies the rules deserialized, updated and removed by {@code loader} to the rules of this collection, and
+   * publishes them at once. If the loader fails, the rules are left unchanged.
+   */
+  public void update(Loader loader) throws IOException {
+    update(loader, Runnable::run);
+  }
+
+  /**
+   * Applies the rules deserialized, updated and removed by {@code loader} to the rules of this collection, which
+   * are published at once by {@code publisher}. If the loader fails, nothing is published.
+   */
+  public void update(Loader loader, Executor publisher) throws IOException {
+    synchronized (loadLock) {
+      Batch batch = runBatch(loader);
+      publisher.execute(() -> applyChanges(batch));
+    }
+  }
+
+  // Must hold the load lock
+  private Batch runBatch(Loader loader) throws IOException {
+    Batch batch = new Batch();
+    this.batch = batch;
+    try {
+      loader.load();
+      return batch;
+    } finally {
+      this.batch = null;
+    }
+  }
+
+  private synchronized void replaceRules(Batch batch) {
+    ruleCounts.clear();
+    for (Rule rule : batch.addedRules) {
+      ruleCounts.merge(rule, 1, Integer::sum);
+    }
+    publish();
+  }
+
+  private synchronized void applyChanges(Batch batch) {
+    for (Rule rule : batch.removedRules) {
+      decrement(rule);
+    }
+    for (Rule rule : batch.addedRules) {
+      ruleCounts.merge(rule, 1, Integer::sum);
+    }
+    // A file may be updated without changing its rules
+    if (!snapshot.rules.equals(ruleCounts.keySet())) {
+      publish();
+    }
+  }
+
+  @Override
+  public ImmutableSet<Rule> getRules() {
+    return snapshot.rules;
+  }
+
   @Override
-  public synchronized ImmutableSet<Rule> getRules() {
-    return ImmutableSet.copyOf(serializedRules);
+  public long getVersion() {
+    return snapshot.version;
   }
 
   @Override
   public synchronized void invalidateCaches() {
-    serializedRules.clear();
+    ruleCounts.clear();
+    publish();
   }
 }
@@ -17,34 +17,63 @@ package io.github.gonalez.zentitylimiter.rule;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.github.gonalez.zentitylimiter.registry.ObjectRegistry;
 import io.github.gonalez.zentitylimiter.util.converter.ObjectConverter;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.logging.Logger;
 
 /**
  * A {@link YamlConfiguration yaml} based rule serializer.
  *
- * <p>If {@code saveConfig} is true we will save the rule into the config path file.
+ * <p>If {@code saveConfig} is true, or a {@link RuleFileWriter} is given, the rules are saved back into their files
+ * when a value is missing or different.
+ *
+ * <p>Files ending with {@code .bundle.yml} are bundles of rules, each yaml document of the file is a rule. The
+ * bundles are never written back.
  */
 public class YamlConfigurationRuleSerializer extends FileWritingRuleSerializer {
   private static final String YAML_EXTENSION = ".yml";
+  private static final String YAML_CONTEXT_VALUE_NAME = "yaml";
+  // A rule bundle contains many rules, one per yaml document
+  private static final String BUNDLE_EXTENSION = ".bundle" + YAML_EXTENSION;
 
-  private final boolean saveConfig;
+  @Nullable
+  private final RuleFileWriter ruleFileWriter;
 
   public YamlConfigurationRuleSerializer(
       ObjectConverter.Registry objectConverterRegistry, boolean checkForMissingFields,
       Path path, ImmutableMap<String, Rule> predefinedRules,
       boolean saveConfig) throws IOException {
+    this(objectConverterRegistry, checkForMissingFields, path, predefinedRules,
+        saveConfig
+            ? new RuleFileWriter(Runnable::run, Logger.getLogger(YamlConfigurationRuleSerializer.class.getName()))
+            : null);
+  }
+
+  /** The rules are saved with the given writer, or not saved if it is null. */
+  public YamlConfigurationRuleSerializer(
+      ObjectConverter.Registry objectConverterRegistry, boolean checkForMissingFields,
+      Path path, ImmutableMap<String, Rule> predefinedRules,
+      @Nullable RuleFileWriter ruleFileWriter) throws IOException {
     super(objectConverterRegistry, checkForMissingFields, path, predefinedRules);
-    this.saveConfig = saveConfig;
+    this.ruleFileWriter = ruleFileWriter;
   }
 
   @Override
@@ -57,35 +86,126 @@ public class YamlConfigurationRuleSerializer extends FileWritingRuleSerializer {
     return YAML_EXTENSION;
   }
 
+  @Override
+  protected boolean isBundleFile(File file) {
+    return file.getName().endsWith(BUNDLE_EXTENSION);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Override
+  protected ImmutableList<Rule> readBundle(File file) throws IOException {
+    ImmutableList.Builder<Rule> rules = ImmutableList.builder();
+    try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      // The documents are parsed one at a time while iterating, so the whole file is never in memory. Only
+      // standard YAML types are constructed, a tag can never instantiate an arbitrary class
+      for (Object document : new Yaml(new SafeConstructor()).loadAll(reader)) {
+        if (document == null) {
+          continue;
+        }
+        if (!(document instanceof Map)) {
+          throw new IOException("Rule bundle document is not a map: " + file);
+        }
+        Map<?, ?> values = (Map<?, ?>) document;
+        ObjectRegistry.Builder objectBuilder = ObjectRegistry.newBuilder();
+        for (Map.Entry<String, Class<?>> target : getPropertyTypes().entrySet()) {
+          Object value = values.get(target.getKey());
+          if (value != null) {
+            objectBuilder.add(target.getKey(), (Class) target.getValue(), value);
+          }
+        }
+        objectBuilder.add(RULE_FILE_CONTEXT_VALUE_NAME, File.class, file);
+        // Skips writing the rule back
+        rules.add(super.build(RuleSerializerContext.of(objectBuilder.build()), null));
+      }
+    } catch (YAMLException e) {
+      throw new IOException("Invalid rule bundle: " + file, e);
+    }
+    return rules.build();
+  }
+
   @Override
   protected RuleSerializerContext read(File file) {
     YamlConfiguration yamlConfiguration = YamlConfiguration.loadConfiguration(file);
     ObjectRegistry.Builder objectBuilder = ObjectRegistry.newBuilder();
-    for (Map.Entry<String, Method> target : getRuleMethods().entrySet()) {
+    for (Map.Entry<String, Class<?>> target : getPropertyTypes().entrySet()) {
       String keyName = target.getKey();
       if (yamlConfiguration.contains(keyName)) {
         Object configKeyValue = yamlConfiguration.get(keyName);
-        objectBuilder.add(keyName, (Class) target.getValue().getReturnType(), configKeyValue);
+        objectBuilder.add(keyName, (Class) target.getValue(), configKeyValue);
       }
     }
     objectBuilder.add("file", File.class, file);
+    // Keep the parsed file, so it is not parsed again when building the rule
+    objectBuilder.add(YAML_CONTEXT_VALUE_NAME, YamlConfiguration.class, yamlConfiguration);
     return RuleSerializerContext.of(objectBuilder.build());
   }
 
   @Override
-  public Rule deserialize(RuleSerializerContext context, @Nullable Visitor visitor) throws IOException {
+  protected Rule build(RuleSerializerContext context, @Nullable Visitor visitor) throws IOException {
     File file = context.get(RULE_FILE_CONTEXT_VALUE_NAME, File.class);
     checkState(file != null,
         "File was not found on RuleSerializerContext," +
             " expected value name: " + RULE_FILE_CONTEXT_VALUE_NAME);
-    YamlConfiguration yamlConfiguration = YamlConfiguration.loadConfiguration(file);
+    YamlConfiguration contextYamlConfiguration = context.get(YAML_CONTEXT_VALUE_NAME, YamlConfiguration.class);
+    YamlConfiguration yamlConfiguration =
+        contextYamlConfiguration != null ? contextYamlConfiguration : YamlConfiguration.loadConfiguration(file);
+    boolean[] changed = new boolean[1];
     Rule rule =
-        super.deserialize(context,
-            Visitor.of((rule1, valueName, valueType, value)
-                -> yamlConfiguration.set(valueName, value)));
-    if (this.saveConfig) {
-      yamlConfiguration.save(file);
+        super.build(context,
+            Visitor.of((rule1, valueName, valueType, value) -> {
+              if (!isSameValue(value, yamlConfiguration.get(valueName))) {
+                yamlConfiguration.set(valueName, value);
+                changed[0] = true;
+              }
+            }));
+    // Only write the file if a value is missing or different, and the serialized form changed
+    if (ruleFileWriter != null && changed[0]) {
+      String contents = yamlConfiguration.saveToString();
+      if (!file.exists() || !contents.equals(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8))) {
+        ruleFileWriter.write(file, contents);
+      }
     }
     return rule;
   }
+
+  /**
+   * @return whether the given rule value is the same as the value read from the file. The file may hold a value
+   * with another type, such as an {@code Integer} for a {@code double}, or a section for a map.
+   */
+  private static boolean isSameValue(Object value, @Nullable Object configValue) {
+    if (configValue instanceof ConfigurationSection) {
+      configValue = ((ConfigurationSection) configValue).getValues(false);
+    }
+    if (value instanceof Number && configValue instanceof Number) {
+      return ((Number) value).doubleValue() == ((Number) configValue).doubleValue();
+    }
+    if (value instanceof Map && configValue instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      Map<?, ?> configMap = (Map<?, ?>) configValue;
+      if (map.size() != configMap.size()) {
+        return false;
+      }
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        if (!isSameValue(entry.getValue(), configMap.get(entry.getKey()))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (value instanceof Collection && configValue instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      Collection<?> configCollection = (Collection<?>) configValue;
+      if (collection.size() != configCollection.size()) {
+        return false;
+      }
+      Iterator<?> configIterator = configCollection.iterator();
+      for (Object element : collection) {
+        if (!isSameValue(element, configIterator.next())) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return value.equals(configValue);
+  }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.util;
+
+/** Helper class to pack chunk coordinates into a single {@code long}. */
+public final class ChunkKeys {
+
+  /** @return the key for the given chunk coordinates. */
+  public static long pack(int chunkX, int chunkZ) {
+    return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+  }
+
+  /** @return the chunk x coordinate of the given key. */
+  public static int chunkX(long key) {
+    return (int) (key >> 32);
+  }
+
+  /** @return the chunk z coordinate of the given key. */
+  public static int chunkZ(long key) {
+    return (int) key;
+  }
+
+  private ChunkKeys() {}
+}
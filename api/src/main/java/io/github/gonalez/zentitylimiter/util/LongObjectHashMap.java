@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A hash map of primitive {@code long} keys, which avoids boxing the keys. Uses open addressing with linear
+ * probing, {@code null} values are not allowed.
+ *
+ * <p>This class is not thread safe.
+ */
+public final class LongObjectHashMap<V> {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private long[] keys;
+  private Object[] values;
+  private int size;
+
+  public LongObjectHashMap() {
+    keys = new long[DEFAULT_CAPACITY];
+    values = new Object[DEFAULT_CAPACITY];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable
+  public V get(long key) {
+    int mask = keys.length - 1;
+    for (int i = index(key, mask); values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return (V) values[i];
+      }
+    }
+    return null;
+  }
+
+  /** @return the previous value of the key, or {@code null} if there was none. */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  public V put(long key, V value) {
+    checkNotNull(value);
+    int mask = keys.length - 1;
+    int i = index(key, mask);
+    for (; values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        V previous = (V) values[i];
+        values[i] = value;
+        return previous;
+      }
+    }
+    keys[i] = key;
+    values[i] = value;
+    // Keep the load factor under 0.5
+    if (++size * 2 > keys.length) {
+      resize(keys.length * 2);
+    }
+    return null;
+  }
+
+  /** @return the removed value of the key, or {@code null} if there was none. */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  public V remove(long key) {
+    int mask = keys.length - 1;
+    int i = index(key, mask);
+    for (; values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        V previous = (V) values[i];
+        shiftBack(i, mask);
+        size--;
+        return previous;
+      }
+    }
+    return null;
+  }
+
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  // Moves back the entries after the removed slot, so there are no gaps in their probe sequences
+  private void shiftBack(int removed, int mask) {
+    int gap = removed;
+    for (int i = (gap + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+      int ideal = index(keys[i], mask);
+      // Move the entry if the gap is between its ideal slot and its current slot
+      if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+        keys[gap] = keys[i];
+        values[gap] = values[i];
+        gap = i;
+      }
+    }
+    values[gap] = null;
+  }
+
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[capacity];
+    values = new Object[capacity];
+    int mask = capacity - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldValues[j] != null) {
+        int i = index(oldKeys[j], mask);
+        while (values[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  private static int index(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.util.converter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.util.Pair;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable {@link ObjectConverter.Registry} which sees the converters as the edges of a graph of types. A
+ * converter can convert any subtype of its {@link ObjectConverter#requiredType() required type}, and the
+ * converter found for a pair of types is the shortest chain of converters between them.
+ *
+ * <p>The chain of each pair of types is only searched once, both the found chains and the pairs without one are
+ * cached, so this registry can be used by many threads at once.
+ */
+final class ConverterGraph implements ObjectConverter.Registry {
+  private final ImmutableList<ObjectConverter<?, ?>> converters;
+
+  private final Map<Pair<Class<?>, Class<?>>, Optional<ObjectConverter<?, ?>>> chains = new ConcurrentHashMap<>();
+  private final Map<Class<?>, Class<?>> convertedTypes = new ConcurrentHashMap<>();
+
+  ConverterGraph(ImmutableList<ObjectConverter<?, ?>> converters) {
+    this.converters = checkNotNull(converters);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable
+  @Override
+  public <K, V> ObjectConverter<K, V> findConverter(Class<K> keyType, Class<V> valueType) {
+    return (ObjectConverter<K, V>) chains.computeIfAbsent(Pair.<Class<?>, Class<?>>create(keyType, valueType),
+        pair -> Optional.ofNullable(findChain(keyType, valueType))).orElse(null);
+  }
+
+  @Override
+  public Class<?> getConvertedType(Class<?> keyType) {
+    return convertedTypes.computeIfAbsent(keyType, type -> {
+      for (ObjectConverter<?, ?> converter : converters) {
+        if (converter.requiredType().isAssignableFrom(type)) {
+          return converter.convertedType();
+        }
+      }
+      return type;
+    });
+  }
+
+  /** Breadth first search from {@code keyType} to a type assignable to {@code valueType}. */
+  @Nullable
+  private ObjectConverter<?, ?> findChain(Class<?> keyType, Class<?> valueType) {
+    // The converter used to reach each type, and the type it was reached from
+    Map<Class<?>, Pair<Class<?>, ObjectConverter<?, ?>>> reachedFrom = new HashMap<>();
+    reachedFrom.put(keyType, null);
+    Queue<Class<?>> pendingTypes = new ArrayDeque<>();
+    pendingTypes.add(keyType);
+    while (!pendingTypes.isEmpty()) {
+      Class<?> type = pendingTypes.poll();
+      if (valueType.isAssignableFrom(type)) {
+        ImmutableList.Builder<ObjectConverter<?, ?>> chain = ImmutableList.builder();
+        for (Pair<Class<?>, ObjectConverter<?, ?>> step = reachedFrom.get(type);
+             step != null;
+             step = reachedFrom.get(step.getKey())) {
+          chain.add(step.getValue());
+        }
+        return new ChainedObjectConverter(keyType, type, chain.build().reverse());
+      }
+      for (ObjectConverter<?, ?> converter : converters) {
+        Class<?> convertedType = converter.convertedType();
+        if (converter.requiredType().isAssignableFrom(type) && !reachedFrom.containsKey(convertedType)) {
+          reachedFrom.put(convertedType, Pair.create(type, converter));
+          pendingTypes.add(convertedType);
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Converts a value with a chain of converters. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final class ChainedObjectConverter implements ObjectConverter<Object, Object> {
+    private final Class requiredType;
+    private final Class convertedType;
+    private final ImmutableList<ObjectConverter> chain;
+
+    ChainedObjectConverter(Class<?> requiredType, Class<?> convertedType, ImmutableList<ObjectConverter<?, ?>> chain) {
+      this.requiredType = requiredType;
+      this.convertedType = convertedType;
+      this.chain = (ImmutableList) chain;
+    }
+
+    @Override
+    public Class<Object> requiredType() {
+      return requiredType;
+    }
+
+    @Override
+    public Class<Object> convertedType() {
+      return convertedType;
+    }
+
+    @Override
+    public Object convert(Object key) {
+      Object value = key;
+      for (ObjectConverter converter : chain) {
+        value = converter.convert(value);
+      }
+      return value;
+    }
+  }
+}
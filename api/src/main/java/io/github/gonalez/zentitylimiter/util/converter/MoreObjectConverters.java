@@ -50,18 +50,15 @@ public final class MoreObjectConverters {
 
                         @Override
                         public Object convert(Object key) {
-                          return requiredType();
+                          // The wrapped value is unboxed when used
+                          return key;
                         }
                       }).collect(Collectors.toList()))
           .build();
 
   /** @return the {@link ObjectConverter#convertedType()} for the given class. */
   public static Class<?> getConvertedType(Class<?> clazz) {
-    ObjectConverter<?, ?> objectConverter = DEFAULT_REGISTRY.findConverter(clazz, clazz);
-    if (objectConverter != null) {
-      return objectConverter.convertedType();
-    }
-    return clazz;
+    return DEFAULT_REGISTRY.getConvertedType(clazz);
   }
 
   private MoreObjectConverters() {}
@@ -15,10 +15,11 @@
  */
 package io.github.gonalez.zentitylimiter.util.converter;
 
+import com.google.common.collect.ImmutableList;
 import io.github.gonalez.zentitylimiter.util.Pair;
 
 import javax.annotation.Nullable;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /** Converts a type to a different type. */
@@ -29,9 +30,21 @@ public interface ObjectConverter<K, V> {
       return new Builder.DefaultObjectConverterBuilder();
     }
 
+    /**
+     * @return a converter from {@code keyType} to a type assignable to {@code valueType}, which may chain several
+     * converters, or {@code null} if there is none.
+     */
     @Nullable
     <K, V> ObjectConverter<K , V> findConverter(Class<K> keyType, Class<V> valueType);
 
+    /**
+     * @return the type the values of {@code keyType} are converted to by the first converter which accepts them,
+     * or {@code keyType} if there is none. By default no conversion is known, so {@code keyType} is returned.
+     */
+    default Class<?> getConvertedType(Class<?> keyType) {
+      return keyType;
+    }
+
     /** Builder for {@link Registry}. */
     interface Builder {
       <K, V> Builder addConverter(ObjectConverter<K, V> objectConverter);
@@ -45,8 +58,9 @@ public interface ObjectConverter<K, V> {
       Registry build();
 
       final class DefaultObjectConverterBuilder implements Builder {
+        // Keeps the order the converters were added, the first converters are preferred
         private final Map<Pair<Class<?>, Class<?>>,
-            ObjectConverter<?, ?>> builder = new HashMap<>();
+            ObjectConverter<?, ?>> builder = new LinkedHashMap<>();
 
         @Override
         public <K, V> Builder addConverter(ObjectConverter<K, V> objectConverter) {
@@ -57,26 +71,7 @@ public interface ObjectConverter<K, V> {
 
         @Override
         public Registry build() {
-          return new Registry() {
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            @Nullable
-            @Override
-            public <K, V> ObjectConverter<K, V> findConverter(Class<K> keyType, Class<V> valueType) {
-              // TODO: a better way to cache this...
-              Pair<Class<K>, Class<V>> pair = Pair.create(keyType, valueType);
-              if (builder.containsKey(pair)) {
-                return (ObjectConverter<K, V>) builder.get(pair);
-              } else {
-                for (Map.Entry<Pair<Class<?>, Class<?>>, ObjectConverter<?, ?>> entry : builder.entrySet()) {
-                  if (entry.getKey().getKey().isAssignableFrom(keyType)) {
-                    builder.put((Pair) pair, entry.getValue());
-                    return findConverter(keyType, valueType);
-                  }
-                }
-              }
-              return null;
-            }
-          };
+          return new ConverterGraph(ImmutableList.copyOf(builder.values()));
         }
       }
     }
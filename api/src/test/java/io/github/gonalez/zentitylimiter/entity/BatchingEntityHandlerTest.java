@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for {@link BatchingEntityHandler}. */
+public class BatchingEntityHandlerTest {
+
+  private static Entity mockEntity(World world, double x, double z) {
+    Entity entity = mock(Entity.class);
+    when(entity.getLocation()).thenReturn(new Location(world, x, 64, z));
+    when(entity.isValid()).thenReturn(true);
+    return entity;
+  }
+
+  @Test
+  public void testHandlesEntitiesByChunkWithinLimit() {
+    World world = mock(World.class);
+    Entity first = mockEntity(world, 0, 0);
+    Entity otherChunk = mockEntity(world, 100, 100);
+    Entity sameChunk = mockEntity(world, 5, 5);
+    Entity removed = mockEntity(world, 1, 1);
+    when(removed.isValid()).thenReturn(false);
+
+    List<Entity> handled = new ArrayList<>();
+    BatchingEntityHandler batchingEntityHandler =
+        new BatchingEntityHandler(mock(Plugin.class), ImmutableList.of(handled::add), 2, Long.MAX_VALUE);
+    batchingEntityHandler.handle(first);
+    batchingEntityHandler.handle(otherChunk);
+    batchingEntityHandler.handle(removed);
+    batchingEntityHandler.handle(sameChunk);
+    // Queued only once
+    batchingEntityHandler.handle(first);
+    assertEquals(4, batchingEntityHandler.getQueuedEntities());
+    assertTrue(batchingEntityHandler.isPending(first));
+
+    // The entities of the first chunk are handled first, the invalid entity is skipped
+    batchingEntityHandler.run();
+    assertEquals(ImmutableList.of(first, sameChunk), handled);
+    assertFalse(batchingEntityHandler.isPending(first));
+
+    batchingEntityHandler.run();
+    assertEquals(ImmutableList.of(first, sameChunk, otherChunk), handled);
+    assertEquals(0, batchingEntityHandler.getQueuedEntities());
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import org.bukkit.Chunk;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/** Tests for {@link ChunkSweepingEntityFeeder}. */
+@ExtendWith(MockitoExtension.class)
+public class ChunkSweepingEntityFeederTest {
+  @Mock private Plugin plugin;
+  @Mock private Server server;
+  @Mock private World world;
+  @Mock private EntityCheckingTask entityCheckingTask;
+
+  // The entity of each loaded chunk, by chunk x
+  private final List<Entity> entities = new ArrayList<>();
+
+  @BeforeEach
+  public void setUp() {
+    UUID worldId = UUID.randomUUID();
+    when(plugin.getServer()).thenReturn(server);
+    when(server.getWorld(worldId)).thenReturn(world);
+    when(world.getUID()).thenReturn(worldId);
+
+    Chunk[] loadedChunks = new Chunk[5];
+    for (int x = 0; x < loadedChunks.length; x++) {
+      Chunk chunk = mock(Chunk.class);
+      Entity entity = mock(Entity.class);
+      // Not every chunk is swept by every test
+      lenient().when(chunk.getX()).thenReturn(x);
+      lenient().when(chunk.getEntities()).thenReturn(new Entity[] {entity});
+      lenient().when(world.isChunkLoaded(x, 0)).thenReturn(true);
+      lenient().when(world.getChunkAt(x, 0)).thenReturn(chunk);
+      loadedChunks[x] = chunk;
+      entities.add(entity);
+    }
+    when(world.getLoadedChunks()).thenReturn(loadedChunks);
+  }
+
+  @Test
+  public void testSpreadsPassOverInterval() {
+    ChunkSweepingEntityFeeder entityFeeder =
+        new ChunkSweepingEntityFeeder(plugin, () -> ImmutableList.of(world), entityCheckingTask, 2, 1);
+    InOrder inOrder = inOrder(entityCheckingTask);
+
+    // 5 chunks in 2 ticks, 3 chunks every tick
+    entityFeeder.run();
+    inOrder.verify(entityCheckingTask).newCycle();
+    for (int x = 0; x < 3; x++) {
+      inOrder.verify(entityCheckingTask).addEntityForChecking(entities.get(x));
+    }
+    entityFeeder.run();
+    for (int x = 3; x < 5; x++) {
+      inOrder.verify(entityCheckingTask).addEntityForChecking(entities.get(x));
+    }
+    inOrder.verifyNoMoreInteractions();
+
+    // The next pass starts right after the interval, with a new cycle
+    entityFeeder.run();
+    inOrder.verify(entityCheckingTask).newCycle();
+    inOrder.verify(entityCheckingTask, times(3)).addEntityForChecking(any());
+  }
+
+  @Test
+  public void testSweepsAtLeastMinChunksPerTick() {
+    ChunkSweepingEntityFeeder entityFeeder =
+        new ChunkSweepingEntityFeeder(plugin, () -> ImmutableList.of(world), entityCheckingTask, 100, 2);
+    entityFeeder.run();
+    verify(entityCheckingTask, times(2)).addEntityForChecking(any());
+
+    // Chunks unloaded in the middle of the pass are skipped
+    when(world.isChunkLoaded(2, 0)).thenReturn(false);
+    entityFeeder.run();
+    verify(entityCheckingTask).addEntityForChecking(entities.get(3));
+    verify(entityCheckingTask, never()).addEntityForChecking(entities.get(2));
+
+    // The pass is over, but the next one waits for the interval
+    entityFeeder.run();
+    entityFeeder.run();
+    verify(entityCheckingTask, times(1)).newCycle();
+    verify(entityCheckingTask, times(4)).addEntityForChecking(any());
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.entity.Entity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+
+/** Tests for {@link EntityChecker}. */
+@ExtendWith(MockitoExtension.class)
+public class EntityCheckerTest {
+  @Mock private EntityExtractor entityExtractor;
+
+  @Test
+  public void testClusterAwareCheckerExtractsClusterOnce() {
+    Rule rule = Rule.newBuilder().setMaxAmount(5).build();
+    RuleDescription ruleDescription = mock(RuleDescription.class);
+
+    ImmutableSet.Builder<Entity> clusterBuilder = ImmutableSet.builder();
+    for (int i = 0; i < 3; i++) {
+      Entity entity = mock(Entity.class);
+      when(entity.getUniqueId()).thenReturn(UUID.randomUUID());
+      clusterBuilder.add(entity);
+    }
+    ImmutableSet<Entity> cluster = clusterBuilder.build();
+    when(entityExtractor.extractEntitiesInLocation(any(), anyDouble(), any())).thenReturn(cluster);
+
+    EntityChecker entityChecker =
+        new EntityHandlingEntityChecker(r -> ruleDescription, entityExtractor, ImmutableList.of(), true);
+    for (Entity entity : cluster) {
+      entityChecker.check(entity, rule);
+    }
+    verify(entityExtractor, times(1)).extractEntitiesInLocation(any(), anyDouble(), any());
+
+    // The cluster is extracted again on the next cycle
+    entityChecker.newCycle();
+    assertEquals(EntityChecker.ResultType.TOO_FEW_ENTITIES, entityChecker.check(cluster.asList().get(1), rule));
+    assertEquals(EntityChecker.ResultType.ALREADY_CHECKED, entityChecker.check(cluster.asList().get(2), rule));
+    verify(entityExtractor, times(2)).extractEntitiesInLocation(any(), anyDouble(), any());
+  }
+
+  @Test
+  public void testCheckAllSkipsExtractionWithoutPendingChecks() {
+    Entity entity = mock(Entity.class);
+    EntityChecker entityChecker =
+        new EntityHandlingEntityChecker(r -> null, entityExtractor, ImmutableList.of());
+    assertEquals(ImmutableList.of(), entityChecker.checkAll(entity, ImmutableList.of()));
+    // No rule has a description, so every check ends before extracting
+    assertEquals(
+        ImmutableList.of(EntityChecker.ResultType.RULE_NOT_FOUND, EntityChecker.ResultType.RULE_NOT_FOUND),
+        entityChecker.checkAll(
+            entity, ImmutableList.of(Rule.newBuilder().build(), Rule.newBuilder().setMaxAmount(1).build())));
+    verifyNoInteractions(entityExtractor);
+  }
+}
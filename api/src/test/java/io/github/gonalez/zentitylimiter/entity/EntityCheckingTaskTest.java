@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for {@link EntityCheckingTask}. */
+@ExtendWith(MockitoExtension.class)
+public class EntityCheckingTaskTest {
+  @Mock private EntityChecker entityChecker;
+
+  @Test
+  public void testTickingTaskCarriesOverEntities() {
+    Rule rule = Rule.newBuilder().build();
+    TickingEntityCheckingTask entityCheckingTask =
+        new TickingEntityCheckingTask(
+            mock(Plugin.class), entity -> rule, TimeUnit.SECONDS, 60, 1);
+    entityCheckingTask.addEntityChecker(entityChecker);
+
+    Entity first = mock(Entity.class);
+    Entity second = mock(Entity.class);
+    when(first.isValid()).thenReturn(true);
+    when(first.getUniqueId()).thenReturn(UUID.randomUUID());
+    when(second.isValid()).thenReturn(true);
+    when(second.getUniqueId()).thenReturn(UUID.randomUUID());
+    entityCheckingTask.addEntityForChecking(first);
+    entityCheckingTask.addEntityForChecking(second);
+
+    // The budget only allows a single entity to be checked each tick
+    entityCheckingTask.run();
+    verify(entityChecker).checkAll(first, ImmutableList.of(rule));
+    verify(entityChecker, never()).checkAll(second, ImmutableList.of(rule));
+
+    entityCheckingTask.run();
+    verify(entityChecker).checkAll(second, ImmutableList.of(rule));
+    verify(entityChecker, times(2)).checkAll(any(), any());
+  }
+
+  @Test
+  public void testTickingTaskCycleStartsOnlyWhenRequested() {
+    Rule rule = Rule.newBuilder().build();
+    TickingEntityCheckingTask entityCheckingTask =
+        new TickingEntityCheckingTask(
+            mock(Plugin.class), entity -> rule, TimeUnit.NANOSECONDS, 0, Long.MAX_VALUE);
+    entityCheckingTask.addEntityChecker(entityChecker);
+    EntityCheckingTask.Callback callback = mock(EntityCheckingTask.Callback.class);
+    entityCheckingTask.addCallback(callback);
+
+    Entity entity = mock(Entity.class);
+    when(entity.isValid()).thenReturn(true);
+    when(entity.getUniqueId()).thenReturn(UUID.randomUUID());
+    entityCheckingTask.addEntityForChecking(entity);
+    entityCheckingTask.run();
+    entityCheckingTask.run();
+    verify(callback).onAllEntitiesChecked();
+
+    // Even once the interval elapsed, the entity is only checked again in a new cycle
+    entityCheckingTask.addEntityForChecking(entity);
+    entityCheckingTask.run();
+    verify(entityChecker, times(1)).checkAll(entity, ImmutableList.of(rule));
+    verify(entityChecker, never()).newCycle();
+
+    entityCheckingTask.newCycle();
+    verify(entityChecker).newCycle();
+    entityCheckingTask.addEntityForChecking(entity);
+    entityCheckingTask.run();
+    verify(entityChecker, times(2)).checkAll(entity, ImmutableList.of(rule));
+  }
+
+  @Test
+  public void testThreadTaskCyclesFollowNewCycle() {
+    Rule rule = Rule.newBuilder().build();
+    // The task would wait an hour if it started the cycles itself
+    RunnableEntityCheckingTask entityCheckingTask =
+        new RunnableEntityCheckingTask(entity -> rule, TimeUnit.HOURS, 1);
+    entityCheckingTask.addEntityChecker(entityChecker);
+    EntityCheckingTask.Callback callback = mock(EntityCheckingTask.Callback.class);
+    entityCheckingTask.addCallback(callback);
+
+    Entity entity = mock(Entity.class);
+    entityCheckingTask.newCycle();
+    entityCheckingTask.start();
+    try {
+      entityCheckingTask.addEntityForChecking(entity);
+      verify(entityChecker, timeout(5000)).checkAll(entity, ImmutableList.of(rule));
+      verify(callback, timeout(5000)).onAllEntitiesChecked();
+
+      // Draining the queue does not start a new cycle
+      entityCheckingTask.addEntityForChecking(entity);
+      verify(entityChecker, timeout(5000).times(2)).checkAll(entity, ImmutableList.of(rule));
+      verify(entityChecker, times(1)).newCycle();
+    } finally {
+      entityCheckingTask.shutdown();
+    }
+  }
+
+  @Test
+  public void testQueueDeduplicatesEntitiesPerCycle() {
+    Entity entity = mock(Entity.class);
+    when(entity.getUniqueId()).thenReturn(UUID.randomUUID());
+
+    DeduplicatingEntityQueue entityQueue = new DeduplicatingEntityQueue();
+    assertTrue(entityQueue.offer(entity));
+    assertFalse(entityQueue.offer(entity));
+    assertEquals(entity, entityQueue.poll());
+
+    // Already checked this cycle
+    assertFalse(entityQueue.offer(entity));
+    entityQueue.newCycle();
+    assertTrue(entityQueue.offer(entity));
+    assertEquals(1, entityQueue.size());
+  }
+}
@@ -17,10 +17,13 @@ package io.github.gonalez.zentitylimiter.entity;
 
 import static io.github.gonalez.zentitylimiter.entity.EntityExtractorTest.mockEntity;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.Mockito.*;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.github.gonalez.zentitylimiter.entity.filter.EntityIsNamedExtractorFilter;
@@ -39,6 +42,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.function.Predicate;
+
 @ExtendWith(MockitoExtension.class)
 public class EntityExtractorFilterTest {
   @Mock private static World world;
@@ -93,6 +98,26 @@ public class EntityExtractorFilterTest {
     assertEquals(0, tamedFalse.size());
   }
 
+  /** Tests {@link ClassEntityExtractorFilterExtractor#compileFilters}. */
+  @Test
+  public void testCompiledFiltersAreCachedPerType() {
+    Wolf wolf = mock(Wolf.class);
+    when(wolf.getType()).thenReturn(EntityType.WOLF);
+    when(wolf.isTamed()).thenReturn(true);
+
+    RuleDescription ruleDescription = new DefaultRuleDescription(
+        Rule.newBuilder()
+            .setAllowedEntities(ImmutableList.of("WOLF"))
+            .setOptions(ImmutableMap.of("tamed", true))
+            .build());
+    ClassEntityExtractorFilterExtractor filterExtractor =
+        new ClassEntityExtractorFilterExtractor(entity -> entity.getType().getEntityClass());
+
+    Predicate<Entity> compiledFilters = filterExtractor.compileFilters(ruleDescription, wolf);
+    assertTrue(compiledFilters.test(wolf));
+    assertSame(compiledFilters, filterExtractor.compileFilters(ruleDescription, wolf));
+  }
+
   private <V, T> ImmutableSet<Entity> extractEntitiesWithFilter(
       Entity entity, ExtraEntityExtractorFilter<V, T> entityExtractorFilter, V v) {
     return extractEntitiesWithFilter(entity, entityExtractorFilter,
@@ -18,6 +18,7 @@ package io.github.gonalez.zentitylimiter.entity;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.github.gonalez.zentitylimiter.rule.Rule;
@@ -30,6 +31,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /** Tests for {@link EntityExtractor}. */
 @ExtendWith(MockitoExtension.class)
 public class EntityExtractorTest {
@@ -61,6 +66,103 @@ public class EntityExtractorTest {
                     ruleDescription).size());
   }
 
+  @Test
+  public void testRecursiveEntityExtractorFollowsChains() {
+    // A chain of entities, each one only in the radius of the previous and the next one
+    List<Entity> chain = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      Entity entity = mock(Entity.class);
+      when(entity.getLocation()).thenReturn(new Location(world, i * 4, 0, 0));
+      chain.add(entity);
+    }
+
+    RuleDescription ruleDescription = mock(RuleDescription.class);
+    when(ruleDescription.getFilters()).thenReturn(ImmutableMap.of());
+    when(ruleDescription.getRule()).thenReturn(Rule.newBuilder().build());
+
+    Location location = new Location(world, 0, 0, 0);
+    assertEquals(6, chainExtractor(chain, Integer.MAX_VALUE, Integer.MAX_VALUE)
+        .extractEntitiesInLocation(location, 5, ruleDescription).size());
+    assertEquals(4, chainExtractor(chain, Integer.MAX_VALUE, 2)
+        .extractEntitiesInLocation(location, 5, ruleDescription).size());
+    assertEquals(3, chainExtractor(chain, 3, Integer.MAX_VALUE)
+        .extractEntitiesInLocation(location, 5, ruleDescription).size());
+  }
+
+  @Test
+  public void testSharedExtractionQueriesOnce() {
+    List<Entity> chain = new ArrayList<>();
+    for (int i = 1; i <= 2; i++) {
+      Entity entity = mock(Entity.class);
+      when(entity.getLocation()).thenReturn(new Location(world, i * 2, 0, 0));
+      chain.add(entity);
+    }
+
+    RuleDescription near = mock(RuleDescription.class);
+    when(near.getFilters()).thenReturn(ImmutableMap.of());
+    when(near.getRule()).thenReturn(Rule.newBuilder().setRecursively(false).build());
+    RuleDescription far = mock(RuleDescription.class);
+    when(far.getFilters()).thenReturn(ImmutableMap.of());
+    when(far.getRule()).thenReturn(Rule.newBuilder().setRecursively(false).build());
+
+    int[] queries = new int[1];
+    EntityExtractor entityExtractor = new RecursivelyEntityExtractor(
+        new ClassEntityExtractorFilterExtractor(entity -> Entity.class)) {
+      @Override
+      protected Collection<Entity> getNearbyEntities(World world, Location location, double radius) {
+        queries[0]++;
+        return chain;
+      }
+    };
+
+    ImmutableList<ImmutableSet<Entity>> extracted = entityExtractor.extractEntitiesInLocation(
+        new Location(world, 0, 0, 0), ImmutableList.of(3D, 5D), ImmutableList.of(near, far));
+    assertEquals(ImmutableList.of(ImmutableSet.of(chain.get(0)), ImmutableSet.copyOf(chain)), extracted);
+    assertEquals(1, queries[0]);
+  }
+
+  @Test
+  public void testCountStopsAtLimit() {
+    List<Entity> chain = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      Entity entity = mock(Entity.class);
+      when(entity.getLocation()).thenReturn(new Location(world, i * 4, 0, 0));
+      chain.add(entity);
+    }
+
+    RuleDescription recursive = mock(RuleDescription.class);
+    when(recursive.getFilters()).thenReturn(ImmutableMap.of());
+    when(recursive.getRule()).thenReturn(Rule.newBuilder().build());
+    RuleDescription nonRecursive = mock(RuleDescription.class);
+    when(nonRecursive.getFilters()).thenReturn(ImmutableMap.of());
+    when(nonRecursive.getRule()).thenReturn(Rule.newBuilder().setRecursively(false).build());
+
+    Location location = new Location(world, 0, 0, 0);
+    EntityExtractor entityExtractor = chainExtractor(chain, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    assertEquals(3, entityExtractor.countUpTo(location, 5, recursive, 3));
+    assertEquals(6, entityExtractor.countUpTo(location, 5, recursive, 10));
+    // Only the first entity of the chain is skipped, the chain is still followed through it
+    assertEquals(5, entityExtractor.countUpTo(location, 5, recursive, 10, entity -> entity != chain.get(0)));
+    assertEquals(2, entityExtractor.countUpTo(location, 5, nonRecursive, 10));
+    assertEquals(0, entityExtractor.countUpTo(location, 5, nonRecursive, 0));
+  }
+
+  private static EntityExtractor chainExtractor(List<Entity> chain, int maxEntities, int maxDepth) {
+    return new RecursivelyEntityExtractor(
+        new ClassEntityExtractorFilterExtractor(entity -> Entity.class), maxEntities, maxDepth) {
+      @Override
+      protected Collection<Entity> getNearbyEntities(World world, Location location, double radius) {
+        List<Entity> nearbyEntities = new ArrayList<>();
+        for (Entity entity : chain) {
+          if (Math.abs(entity.getLocation().getX() - location.getX()) <= radius) {
+            nearbyEntities.add(entity);
+          }
+        }
+        return nearbyEntities;
+      }
+    };
+  }
+
   static Entity mockEntity(EntityType entityType) {
     Entity entity = mock(Entity.class);
     when(entity.getType()).thenReturn(entityType);
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.github.gonalez.zentitylimiter.entity.index.ChunkEntityCounter;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/** Tests for {@link EntitySpawnGate}. */
+public class EntitySpawnGateTest {
+
+  @Test
+  public void testWouldExceedOnceLimitIsReached() {
+    Rule rule = Rule.newBuilder().setMaxAmount(2).build();
+    Entity spawning = mock(Entity.class);
+    Entity first = mock(Entity.class);
+    Entity second = mock(Entity.class);
+    // Counts with the default implementation
+    EntityExtractor entityExtractor = mock(EntityExtractor.class, CALLS_REAL_METHODS);
+    doReturn(ImmutableSet.of(first)).when(entityExtractor).extractEntitiesInLocation(any(), anyDouble(), any());
+
+    EntitySpawnGate entitySpawnGate =
+        new EntitySpawnGate(r -> mock(RuleDescription.class), entityExtractor, null, ImmutableList.of());
+    assertFalse(entitySpawnGate.wouldExceed(spawning, ImmutableList.of(rule)));
+
+    doReturn(ImmutableSet.of(first, second)).when(entityExtractor).extractEntitiesInLocation(any(), anyDouble(), any());
+    assertTrue(entitySpawnGate.wouldExceed(spawning, ImmutableList.of(rule)));
+  }
+
+  @Test
+  public void testPendingEntitiesAreNotCounted() {
+    Rule rule = Rule.newBuilder().setMaxAmount(1).build();
+    Entity pending = mock(Entity.class);
+    EntityExtractor entityExtractor = mock(EntityExtractor.class, CALLS_REAL_METHODS);
+    doReturn(ImmutableSet.of(pending)).when(entityExtractor).extractEntitiesInLocation(any(), anyDouble(), any());
+
+    EntityHandler entityHandler = new EntityHandler() {
+      @Override
+      public void handle(Entity entity) {}
+
+      @Override
+      public boolean isPending(Entity entity) {
+        return entity == pending;
+      }
+    };
+    EntitySpawnGate entitySpawnGate =
+        new EntitySpawnGate(r -> mock(RuleDescription.class), entityExtractor, null, ImmutableList.of(entityHandler));
+    assertFalse(entitySpawnGate.wouldExceed(mock(Entity.class), rule));
+  }
+
+  @Test
+  public void testPendingEntitiesAreNotCountedPerChunk() {
+    Rule rule = Rule.newBuilder().setMaxAmount(10).setMaxAmountPerChunk(1).build();
+    World world = mock(World.class);
+    Location location = new Location(world, 0, 64, 0);
+    Entity spawning = mock(Entity.class);
+    Entity pending = mock(Entity.class);
+    when(spawning.getLocation()).thenReturn(location);
+    when(spawning.getType()).thenReturn(EntityType.COW);
+    when(pending.getType()).thenReturn(EntityType.COW);
+    Chunk chunk = mock(Chunk.class);
+    when(chunk.getEntities()).thenReturn(new Entity[] {pending});
+    when(world.getChunkAt(location)).thenReturn(chunk);
+    ChunkEntityCounter chunkEntityCounter = mock(ChunkEntityCounter.class);
+    when(chunkEntityCounter.count(location, EntityType.COW)).thenReturn(1);
+
+    Set<Entity> pendingEntities = new HashSet<>();
+    EntityHandler entityHandler = new EntityHandler() {
+      @Override
+      public void handle(Entity entity) {}
+
+      @Override
+      public boolean isPending(Entity entity) {
+        return pendingEntities.contains(entity);
+      }
+    };
+    EntityExtractor entityExtractor = mock(EntityExtractor.class, CALLS_REAL_METHODS);
+    doReturn(ImmutableSet.of()).when(entityExtractor).extractEntitiesInLocation(any(), anyDouble(), any());
+    EntitySpawnGate entitySpawnGate =
+        new EntitySpawnGate(
+            r -> mock(RuleDescription.class), entityExtractor, chunkEntityCounter, ImmutableList.of(entityHandler));
+    assertTrue(entitySpawnGate.wouldExceed(spawning, rule));
+
+    pendingEntities.add(pending);
+    assertFalse(entitySpawnGate.wouldExceed(spawning, rule));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.entity.Cow;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+/** Tests for {@link FreezingEntityHandler}. */
+public class FreezingEntityHandlerTest {
+
+  private static <T extends Entity> T mockEntity(Class<T> type) {
+    T entity = mock(type);
+    when(entity.getUniqueId()).thenReturn(UUID.randomUUID());
+    when(entity.isValid()).thenReturn(true);
+    return entity;
+  }
+
+  @Test
+  public void testThawsOnceWithinLimitOfEveryRule() {
+    Rule firstRule = Rule.newBuilder().setMaxAmount(1).build();
+    Rule secondRule = Rule.newBuilder().setMaxAmount(2).build();
+    Cow cow = mockEntity(Cow.class);
+    Player player = mockEntity(Player.class);
+
+    FreezingEntityHandler freezingEntityHandler = new FreezingEntityHandler(10);
+    freezingEntityHandler.handleAll(firstRule, cow, ImmutableList.of(cow, player));
+    freezingEntityHandler.handleAll(secondRule, cow, ImmutableList.of(cow));
+    assertTrue(freezingEntityHandler.isFrozen(cow));
+    // Players are never frozen
+    assertFalse(freezingEntityHandler.isFrozen(player));
+
+    freezingEntityHandler.handleWithinLimit(firstRule, cow, ImmutableList.of(cow));
+    assertTrue(freezingEntityHandler.isFrozen(cow));
+    freezingEntityHandler.handleWithinLimit(secondRule, cow, ImmutableList.of(cow));
+    assertFalse(freezingEntityHandler.isFrozen(cow));
+  }
+
+  @Test
+  public void testThawsInBatches() {
+    Rule rule = Rule.newBuilder().setMaxAmount(0).build();
+    ImmutableList<Entity> cows =
+        ImmutableList.of(mockEntity(Cow.class), mockEntity(Cow.class), mockEntity(Cow.class));
+
+    FreezingEntityHandler freezingEntityHandler = new FreezingEntityHandler(2);
+    freezingEntityHandler.handleAll(rule, cows.get(0), cows);
+    assertEquals(3, freezingEntityHandler.getFrozenEntities());
+    freezingEntityHandler.handleWithinLimit(rule, cows.get(0), cows);
+    assertEquals(1, freezingEntityHandler.getFrozenEntities());
+    freezingEntityHandler.handleWithinLimit(rule, cows.get(0), cows);
+    assertEquals(0, freezingEntityHandler.getFrozenEntities());
+  }
+
+  @Test
+  public void testForgetsDeadEntities() {
+    Cow cow = mockEntity(Cow.class);
+    FreezingEntityHandler freezingEntityHandler = new FreezingEntityHandler(1);
+    freezingEntityHandler.handle(cow);
+    freezingEntityHandler.forget(cow);
+    assertFalse(freezingEntityHandler.isFrozen(cow));
+  }
+
+  @Test
+  public void testFrozenEntitiesArePickedAsExceeded() {
+    Rule rule = Rule.newBuilder().setMaxAmount(2).build();
+    Cow first = mockEntity(Cow.class);
+    Cow second = mockEntity(Cow.class);
+    Cow third = mockEntity(Cow.class);
+    FreezingEntityHandler freezingEntityHandler = new FreezingEntityHandler(10);
+    freezingEntityHandler.handleAll(rule, first, ImmutableList.of(first));
+
+    EntityExtractor entityExtractor = mock(EntityExtractor.class);
+    when(entityExtractor.extractEntitiesInLocation(any(), anyDouble(), any()))
+        .thenReturn(ImmutableSet.of(first, second, third));
+    EntityChecker entityChecker =
+        new EntityHandlingEntityChecker(
+            r -> mock(RuleDescription.class), entityExtractor, ImmutableList.of(freezingEntityHandler));
+    // The third entity comes last this time, but the first one is still the one frozen
+    entityChecker.check(second, rule);
+    assertTrue(freezingEntityHandler.isFrozen(first));
+    assertFalse(freezingEntityHandler.isFrozen(third));
+    assertEquals(1, freezingEntityHandler.getFrozenEntities());
+  }
+
+  @Test
+  public void testThawsUnloadedEntitiesOnceLoaded() {
+    Cow cow = mockEntity(Cow.class);
+    UUID uniqueId = cow.getUniqueId();
+    FreezingEntityHandler freezingEntityHandler = new FreezingEntityHandler(1);
+    freezingEntityHandler.handle(cow);
+    when(cow.isValid()).thenReturn(false);
+    freezingEntityHandler.thawAll();
+    assertEquals(ImmutableSet.of(uniqueId), freezingEntityHandler.getUnloadedFrozenEntities());
+
+    // Loaded again, after the plugin is enabled again
+    FreezingEntityHandler enabledFreezingEntityHandler = new FreezingEntityHandler(1);
+    enabledFreezingEntityHandler.addUnloadedFrozenEntities(freezingEntityHandler.getUnloadedFrozenEntities());
+    Cow loadedCow = mockEntity(Cow.class);
+    when(loadedCow.getUniqueId()).thenReturn(uniqueId);
+    assertTrue(enabledFreezingEntityHandler.thawIfLeftFrozen(loadedCow));
+    assertFalse(enabledFreezingEntityHandler.thawIfLeftFrozen(loadedCow));
+    assertTrue(enabledFreezingEntityHandler.getUnloadedFrozenEntities().isEmpty());
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Cow;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Tests for {@link StackingEntityHandler}. */
+public class StackingEntityHandlerTest {
+  private static final Rule RULE = Rule.newBuilder().setMaxAmount(1).build();
+
+  private static Cow mockCow() {
+    Cow cow = mock(Cow.class);
+    AtomicReference<String> customName = new AtomicReference<>();
+    when(cow.getType()).thenReturn(EntityType.COW);
+    when(cow.isValid()).thenReturn(true);
+    when(cow.getCustomName()).thenAnswer(invocation -> customName.get());
+    doAnswer(invocation -> {
+      customName.set(invocation.getArgument(0));
+      return null;
+    }).when(cow).setCustomName(any());
+    return cow;
+  }
+
+  @Test
+  public void testMergesExceededEntitiesIntoChecked() {
+    Cow checked = mockCow();
+    Cow first = mockCow();
+    Cow second = mockCow();
+    StackingEntityHandler.setStackSize(second, 3);
+
+    new StackingEntityHandler(16).handleAll(RULE, checked, ImmutableList.of(first, second));
+    assertEquals(5, StackingEntityHandler.getStackSize(checked));
+    verify(first).remove();
+    verify(second).remove();
+    verify(checked, never()).remove();
+  }
+
+  @Test
+  public void testNamedEntitiesAreNotStacked() {
+    Cow named = mockCow();
+    named.setCustomName("Bessie");
+    assertFalse(StackingEntityHandler.isStackable(named));
+
+    Cow checked = mockCow();
+    new StackingEntityHandler(16).handleAll(RULE, checked, ImmutableList.of(named));
+    assertEquals(1, StackingEntityHandler.getStackSize(checked));
+    verify(named, never()).remove();
+  }
+
+  @Test
+  public void testUnstackSpawnsRemainingStack() {
+    World world = mock(World.class);
+    Cow dead = mockCow();
+    Cow spawned = mockCow();
+    Location location = new Location(world, 0, 64, 0);
+    when(dead.getWorld()).thenReturn(world);
+    when(dead.getLocation()).thenReturn(location);
+    when(world.spawnEntity(location, EntityType.COW)).thenReturn(spawned);
+    StackingEntityHandler.setStackSize(dead, 3);
+
+    LivingEntity stack = StackingEntityHandler.unstack(dead);
+    assertEquals(spawned, stack);
+    assertEquals(2, StackingEntityHandler.getStackSize(spawned));
+    // The last entity of a stack is not spawned again
+    StackingEntityHandler.setStackSize(spawned, 1);
+    assertNull(StackingEntityHandler.unstack(spawned));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.*;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+/** Tests for {@link ChunkEntityCounter}. */
+public class ChunkEntityCounterTest {
+
+  @Test
+  public void testCountsFollowReconcile() {
+    World world = mock(World.class);
+    when(world.getUID()).thenReturn(UUID.randomUUID());
+
+    Entity first = mockEntity(EntityType.PIG, new Location(world, 1, 64, 1));
+    Entity second = mockEntity(EntityType.PIG, new Location(world, 15, 64, 15));
+    Entity zombie = mockEntity(EntityType.ZOMBIE, new Location(world, 2, 64, 2));
+
+    ChunkEntityCounter chunkEntityCounter = new ChunkEntityCounter(type -> type == EntityType.PIG);
+    chunkEntityCounter.track(first);
+    chunkEntityCounter.track(second);
+    // Tracking an entity twice does not count it twice
+    chunkEntityCounter.track(second);
+    assertFalse(chunkEntityCounter.track(zombie));
+    assertEquals(2, chunkEntityCounter.count(world, 0, 0, EntityType.PIG));
+    assertEquals(0, chunkEntityCounter.count(world, 0, 0, EntityType.ZOMBIE));
+
+    // The second entity moves to the next chunk, and the first one is removed
+    when(second.getLocation()).thenReturn(new Location(world, 16, 64, -1));
+    when(first.isValid()).thenReturn(false);
+    chunkEntityCounter.reconcile();
+    assertEquals(0, chunkEntityCounter.count(world, 0, 0, EntityType.PIG));
+    assertEquals(1, chunkEntityCounter.count(world, 1, -1, EntityType.PIG));
+
+    chunkEntityCounter.untrack(second);
+    assertEquals(0, chunkEntityCounter.count(world, 1, -1, EntityType.PIG));
+  }
+
+  private static Entity mockEntity(EntityType entityType, Location location) {
+    Entity entity = mock(Entity.class);
+    when(entity.getType()).thenReturn(entityType);
+    when(entity.getUniqueId()).thenReturn(UUID.randomUUID());
+    when(entity.getLocation()).thenReturn(location);
+    when(entity.isValid()).thenReturn(true);
+    return entity;
+  }
+}
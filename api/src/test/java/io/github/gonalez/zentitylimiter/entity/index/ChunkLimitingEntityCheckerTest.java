@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.entity.EntityChecker;
+import io.github.gonalez.zentitylimiter.entity.EntityHandler;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/** Tests for {@link ChunkLimitingEntityChecker}. */
+public class ChunkLimitingEntityCheckerTest {
+  /** Freezes the entities, which stay valid. */
+  private static class FreezingHandler implements EntityHandler {
+    final Set<Entity> frozenEntities = new HashSet<>();
+
+    @Override
+    public void handle(Entity entity) {
+      frozenEntities.add(entity);
+    }
+
+    @Override
+    public boolean isHandled(Entity entity) {
+      return frozenEntities.contains(entity);
+    }
+  }
+
+  @Test
+  public void testOnlyFreezesEntitiesAboveLimit() {
+    World world = mock(World.class);
+    when(world.getUID()).thenReturn(UUID.randomUUID());
+    List<Entity> entities = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      entities.add(mockEntity(new Location(world, i, 64, i)));
+    }
+
+    FreezingHandler freezingHandler = new FreezingHandler();
+    ImmutableList<EntityHandler> handlers = ImmutableList.of(freezingHandler);
+    ChunkEntityCounter chunkEntityCounter =
+        new ChunkEntityCounter(
+            type -> true, entity -> ChunkLimitingEntityChecker.isHandled(entity, handlers));
+    ChunkLimitingEntityChecker entityChecker =
+        new ChunkLimitingEntityChecker(mock(EntityChecker.class), chunkEntityCounter, handlers);
+    Rule rule = Rule.newBuilder().setAllowedEntities(ImmutableList.of("PIG")).setMaxAmountPerChunk(4).build();
+
+    for (Entity entity : entities) {
+      chunkEntityCounter.track(entity);
+    }
+    for (Entity entity : entities) {
+      entityChecker.checkAll(entity, ImmutableList.of(rule));
+    }
+    assertEquals(6, freezingHandler.frozenEntities.size());
+
+    // The chunk is loaded again and checked again in the reverse order, the frozen entities are still not counted
+    for (Entity entity : entities) {
+      chunkEntityCounter.track(entity);
+    }
+    for (Entity entity : ImmutableList.copyOf(entities).reverse()) {
+      entityChecker.checkAll(entity, ImmutableList.of(rule));
+    }
+    assertEquals(6, freezingHandler.frozenEntities.size());
+    assertEquals(4, chunkEntityCounter.count(world, 0, 0, EntityType.PIG));
+  }
+
+  private static Entity mockEntity(Location location) {
+    Entity entity = mock(Entity.class);
+    when(entity.getType()).thenReturn(EntityType.PIG);
+    when(entity.getUniqueId()).thenReturn(UUID.randomUUID());
+    when(entity.getLocation()).thenReturn(location);
+    when(entity.isValid()).thenReturn(true);
+    return entity;
+  }
+}
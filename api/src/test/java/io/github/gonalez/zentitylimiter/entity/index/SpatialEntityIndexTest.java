@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+/** Tests for {@link SpatialEntityIndex}. */
+public class SpatialEntityIndexTest {
+
+  @Test
+  public void testNearbyEntitiesFollowReconcile() {
+    World world = mock(World.class);
+    when(world.getUID()).thenReturn(UUID.randomUUID());
+    Location origin = new Location(world, 0, 64, 0);
+
+    Entity near = mockEntity(EntityType.PIG, new Location(world, 2, 64, 2));
+    Entity far = mockEntity(EntityType.PIG, new Location(world, 100, 64, 100));
+    Entity zombie = mockEntity(EntityType.ZOMBIE, new Location(world, 1, 64, 1));
+
+    SpatialEntityIndex entityIndex = new SpatialEntityIndex(type -> type == EntityType.PIG, 4);
+    entityIndex.track(near);
+    entityIndex.track(far);
+    assertFalse(entityIndex.track(zombie));
+    assertEquals(ImmutableList.of(near), entityIndex.getNearbyEntities(origin, 5));
+
+    // The far entity comes closer, and the near one is removed
+    when(far.getLocation()).thenReturn(new Location(world, -3, 64, -3));
+    when(near.isValid()).thenReturn(false);
+    entityIndex.reconcile();
+    assertEquals(ImmutableList.of(far), entityIndex.getNearbyEntities(origin, 5));
+    assertEquals(1, entityIndex.size());
+  }
+
+  private static Entity mockEntity(EntityType entityType, Location location) {
+    Entity entity = mock(Entity.class);
+    when(entity.getType()).thenReturn(entityType);
+    when(entity.getUniqueId()).thenReturn(UUID.randomUUID());
+    when(entity.getLocation()).thenReturn(location);
+    when(entity.isValid()).thenReturn(true);
+    return entity;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.snapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import io.github.gonalez.zentitylimiter.entity.DefaultRuleDescription;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+/** Tests for {@link EntitySnapshotEvaluator}. */
+public class EntitySnapshotEvaluatorTest {
+
+  @Test
+  public void testEvaluateExceededEntities() {
+    World world = mock(World.class);
+    when(world.getUID()).thenReturn(UUID.randomUUID());
+
+    ImmutableList.Builder<EntitySnapshot> snapshots = ImmutableList.builder();
+    ImmutableList.Builder<EntitySnapshot> villagers = ImmutableList.builder();
+    for (int i = 0; i < 4; i++) {
+      EntitySnapshot villager = snapshot(EntityType.VILLAGER, new Location(world, i, 0, 0));
+      villagers.add(villager);
+      snapshots.add(villager);
+    }
+    EntitySnapshot farVillager = snapshot(EntityType.VILLAGER, new Location(world, 50, 0, 0));
+    snapshots.add(farVillager);
+    snapshots.add(snapshot(EntityType.ZOMBIE, new Location(world, 1, 0, 0)));
+
+    Rule rule = Rule.newBuilder().setRadius(5).setMaxAmount(2).build();
+    EntitySnapshotEvaluator.Result result =
+        new EntitySnapshotEvaluator(DefaultRuleDescription::new)
+            .evaluate(snapshots.build(), ImmutableListMultimap.of(villagers.build().get(0).uniqueId(), rule));
+
+    assertEquals(2, result.exceededEntities().size());
+    assertFalse(result.exceededEntities().contains(farVillager.uniqueId()));
+    assertEquals(0, result.unsupportedEntities().size());
+    // The exceeded entities are the ones past the limit of the check
+    EntitySnapshotEvaluator.Check check = Iterables.getOnlyElement(result.checks());
+    assertEquals(rule, check.rule());
+    assertEquals(4, check.entities().size());
+    assertEquals(
+        ImmutableSet.copyOf(check.entities().subList(rule.maxAmount(), check.entities().size())),
+        result.exceededEntities());
+  }
+
+  @Test
+  public void testPerChunkLimitIsNotEvaluated() {
+    World world = mock(World.class);
+    when(world.getUID()).thenReturn(UUID.randomUUID());
+    EntitySnapshot villager = snapshot(EntityType.VILLAGER, new Location(world, 0, 0, 0));
+
+    Rule rule = Rule.newBuilder().setMaxAmountPerChunk(1).build();
+    EntitySnapshotEvaluator.Result result =
+        new EntitySnapshotEvaluator(DefaultRuleDescription::new)
+            .evaluate(ImmutableList.of(villager), ImmutableListMultimap.of(villager.uniqueId(), rule));
+
+    // Left for the checkers on the server thread, which count the entities of each chunk
+    assertEquals(ImmutableListMultimap.of(villager.uniqueId(), rule), result.unsupportedEntities());
+    assertTrue(result.checks().isEmpty());
+  }
+
+  private static EntitySnapshot snapshot(EntityType entityType, Location location) {
+    Entity entity = mock(Entity.class);
+    when(entity.getUniqueId()).thenReturn(UUID.randomUUID());
+    when(entity.getType()).thenReturn(entityType);
+    when(entity.getLocation()).thenReturn(location);
+    return EntitySnapshot.of(entity);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.entity.snapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.entity.DefaultRuleDescription;
+import io.github.gonalez.zentitylimiter.entity.EntityHandler;
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for {@link SnapshotEntityCheckingTask}. */
+public class SnapshotEntityCheckingTaskTest {
+
+  @Test
+  public void testPendingEntitiesAreNotCaptured() {
+    World world = mock(World.class);
+    when(world.getUID()).thenReturn(UUID.randomUUID());
+    Entity[] villagers = new Entity[3];
+    for (int i = 0; i < villagers.length; i++) {
+      Entity villager = mock(Entity.class);
+      when(villager.getUniqueId()).thenReturn(UUID.randomUUID());
+      when(villager.getType()).thenReturn(EntityType.VILLAGER);
+      when(villager.getLocation()).thenReturn(new Location(world, i, 0, 0));
+      when(villager.isValid()).thenReturn(true);
+      villagers[i] = villager;
+    }
+    Chunk chunk = mock(Chunk.class);
+    when(chunk.getEntities()).thenReturn(villagers);
+    when(world.isChunkLoaded(anyInt(), anyInt())).thenReturn(true);
+    when(world.getChunkAt(anyInt(), anyInt())).thenReturn(chunk);
+
+    // Runs the tasks of the scheduler right away
+    Plugin plugin = mock(Plugin.class);
+    Server server = mock(Server.class);
+    BukkitScheduler scheduler = mock(BukkitScheduler.class);
+    when(plugin.getServer()).thenReturn(server);
+    when(server.getScheduler()).thenReturn(scheduler);
+    when(scheduler.runTask(eq(plugin), any())).thenAnswer(invocation -> {
+      invocation.<Runnable>getArgument(1).run();
+      return null;
+    });
+
+    Entity pending = villagers[2];
+    List<Entity> handled = new ArrayList<>();
+    EntityHandler entityHandler = new EntityHandler() {
+      @Override
+      public void handle(Entity entity) {
+        handled.add(entity);
+      }
+
+      @Override
+      public boolean isPending(Entity entity) {
+        return entity == pending;
+      }
+    };
+
+    Rule rule = Rule.newBuilder().setRadius(5).setMaxAmount(1).build();
+    SnapshotEntityCheckingTask entityCheckingTask =
+        new SnapshotEntityCheckingTask(
+            plugin, entity -> rule, new EntitySnapshotEvaluator(DefaultRuleDescription::new),
+            ImmutableList.of(entityHandler), Runnable::run, TimeUnit.SECONDS, 60, Long.MAX_VALUE);
+    entityCheckingTask.start();
+    entityCheckingTask.addEntityForChecking(villagers[0]);
+    entityCheckingTask.run();
+
+    // Only the entity which is not already pending exceeds the limit
+    assertEquals(ImmutableList.of(villagers[1]), handled);
+  }
+}
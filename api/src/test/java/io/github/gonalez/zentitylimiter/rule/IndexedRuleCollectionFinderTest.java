@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/** Tests for {@link IndexedRuleCollectionFinder}. */
+public class IndexedRuleCollectionFinderTest {
+
+  @Test
+  public void testFindRulesOfTypeAndWorld() {
+    World world = mockWorld();
+    World otherWorld = mockWorld();
+
+    Rule globalRule = Rule.newBuilder().setAllowedEntities(ImmutableList.of("PIG", "COW")).build();
+    Rule worldRule = Rule.newBuilder()
+        .setAllowedEntities(ImmutableList.of("PIG"))
+        .setAllowedWorlds(ImmutableList.of("world"))
+        .build();
+    RuleCollection ruleCollection = mock(RuleCollection.class);
+    when(ruleCollection.getRules()).thenReturn(ImmutableSet.of(globalRule, worldRule));
+
+    IndexedRuleCollectionFinder finder =
+        new IndexedRuleCollectionFinder(
+            ruleCollection, name -> name.equals("world") ? world : null, Logger.getAnonymousLogger());
+
+    assertEquals(ImmutableList.of(worldRule, globalRule), finder.findRules(mockEntity(EntityType.PIG, world)));
+    assertEquals(ImmutableList.of(globalRule), finder.findRules(mockEntity(EntityType.PIG, otherWorld)));
+    assertEquals(ImmutableList.of(globalRule), finder.findRules(mockEntity(EntityType.COW, world)));
+    assertEquals(ImmutableList.of(), finder.findRules(mockEntity(EntityType.ZOMBIE, world)));
+  }
+
+  @Test
+  public void testSkipsUnknownEntityTypes() {
+    Rule rule = Rule.newBuilder().setAllowedEntities(ImmutableList.of("PIG", "NOT_AN_ENTITY")).build();
+    RuleCollection ruleCollection = mock(RuleCollection.class);
+    when(ruleCollection.getRules()).thenReturn(ImmutableSet.of(rule));
+
+    IndexedRuleCollectionFinder finder =
+        new IndexedRuleCollectionFinder(ruleCollection, name -> null, Logger.getAnonymousLogger());
+    assertEquals(ImmutableList.of(rule), finder.findRules(mockEntity(EntityType.PIG, mockWorld())));
+  }
+
+  @Test
+  public void testMatchesWorldsLoadedLater() {
+    World world = mockWorld();
+    Rule worldRule = Rule.newBuilder()
+        .setAllowedEntities(ImmutableList.of("PIG"))
+        .setAllowedWorlds(ImmutableList.of("world"))
+        .build();
+    RuleCollection ruleCollection = mock(RuleCollection.class);
+    when(ruleCollection.getRules()).thenReturn(ImmutableSet.of(worldRule));
+
+    Map<String, World> worlds = new HashMap<>();
+    IndexedRuleCollectionFinder finder =
+        new IndexedRuleCollectionFinder(ruleCollection, worlds::get, Logger.getAnonymousLogger());
+    Entity entity = mockEntity(EntityType.PIG, world);
+    assertEquals(ImmutableList.of(), finder.findRules(entity));
+
+    worlds.put("world", world);
+    finder.invalidate();
+    assertEquals(ImmutableList.of(worldRule), finder.findRules(entity));
+  }
+
+  private static World mockWorld() {
+    World world = mock(World.class);
+    when(world.getUID()).thenReturn(UUID.randomUUID());
+    return world;
+  }
+
+  private static Entity mockEntity(EntityType entityType, World world) {
+    Entity entity = mock(Entity.class);
+    when(entity.getType()).thenReturn(entityType);
+    when(entity.getWorld()).thenReturn(world);
+    return entity;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.github.gonalez.zentitylimiter.util.converter.MoreObjectConverters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Tests for the rule bundles of {@link YamlConfigurationRuleSerializer}. */
+public class RuleBundleTest {
+
+  @Test
+  public void testReadsOneRulePerDocument(@TempDir Path dir) throws Exception {
+    Files.write(dir.resolve("world.bundle.yml"), (
+        "allowedEntities: [ZOMBIE]\n"
+            + "maxAmount: 2\n"
+            + "---\n"
+            + "allowedEntities: [PIG, COW]\n"
+            + "radius: 8\n"
+            + "options: {tamed: false}\n"
+            + "---\n").getBytes(StandardCharsets.UTF_8));
+
+    YamlConfigurationRuleSerializer ruleSerializer =
+        new YamlConfigurationRuleSerializer(
+            MoreObjectConverters.DEFAULT_REGISTRY, false, dir, ImmutableMap.of(), false);
+    RuleSerializerListeningRuleCollection ruleCollection = new RuleSerializerListeningRuleCollection(ruleSerializer);
+    ruleSerializer.init();
+
+    assertEquals(
+        ImmutableSet.of(
+            Rule.newBuilder().setAllowedEntities(ImmutableList.of("ZOMBIE")).setMaxAmount(2).build(),
+            Rule.newBuilder()
+                .setAllowedEntities(ImmutableList.of("PIG", "COW"))
+                .setRadius(8)
+                .setOptions(ImmutableMap.of("tamed", false))
+                .build()),
+        ruleCollection.getRules());
+  }
+
+  @Test
+  public void testRejectsJavaTypeTags(@TempDir Path dir) throws Exception {
+    Files.write(dir.resolve("world.bundle.yml"), (
+        "allowedEntities: [ZOMBIE]\n"
+            + "options: !!java.util.HashMap {tamed: false}\n").getBytes(StandardCharsets.UTF_8));
+
+    YamlConfigurationRuleSerializer ruleSerializer =
+        new YamlConfigurationRuleSerializer(
+            MoreObjectConverters.DEFAULT_REGISTRY, false, dir, ImmutableMap.of(), false);
+    assertThrows(IOException.class, ruleSerializer::init);
+  }
+}
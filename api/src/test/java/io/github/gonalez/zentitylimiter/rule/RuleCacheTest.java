@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/** Tests for {@link RuleCache}. */
+public class RuleCacheTest {
+
+  @Test
+  public void testWriteAndRead(@TempDir Path dir) throws Exception {
+    Path cacheFile = dir.resolve("rules.cache");
+    RuleCache ruleCache = new RuleCache(cacheFile, RuleSchema.findGenerated(Rule.class));
+    assertTrue(ruleCache.read().isEmpty());
+
+    Rule rule = Rule.newBuilder()
+        .setAllowedEntities(ImmutableList.of("ZOMBIE", "SKELETON"))
+        .setRadius(2.5)
+        .setOptions(ImmutableMap.of("tamed", false, "name", "a", "levels", ImmutableList.of(1, 2L)))
+        .build();
+    ruleCache.write(ImmutableList.of(new RuleCache.Entry("a/rule.yml", 10, 20, 30, ImmutableList.of(rule, Rule.newBuilder().build()))));
+
+    Map<String, RuleCache.Entry> entries = ruleCache.read();
+    RuleCache.Entry entry = entries.get("a/rule.yml");
+    assertEquals(ImmutableList.of(rule, Rule.newBuilder().build()), entry.rules);
+    assertEquals(10, entry.lastModified);
+    assertEquals(20, entry.size);
+    assertEquals(30, entry.contentHash);
+
+    Files.write(cacheFile, new byte[] {0x5A, 0x45, 0x4C, 0x43, 0, 0, 0, 2, 0});
+    assertThrows(IOException.class, ruleCache::read);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for {@link RuleSerializerListeningRuleCollection}. */
+public class RuleCollectionTest {
+
+  @Test
+  public void testReloadPublishesRulesAtOnce() throws Exception {
+    RuleSerializer ruleSerializer = mock(RuleSerializer.class);
+    RuleSerializerListeningRuleCollection ruleCollection = new RuleSerializerListeningRuleCollection(ruleSerializer);
+    ArgumentCaptor<RuleSerializerListener> listener = ArgumentCaptor.forClass(RuleSerializerListener.class);
+    verify(ruleSerializer).addListener(listener.capture());
+
+    Rule oldRule = Rule.newBuilder().setMaxAmount(1).build();
+    listener.getValue().onDeserialize(oldRule, null);
+    assertEquals(ImmutableSet.of(oldRule), ruleCollection.getRules());
+    long version = ruleCollection.getVersion();
+
+    Rule newRule = Rule.newBuilder().setMaxAmount(2).build();
+    ruleCollection.reload(() -> {
+      listener.getValue().onDeserialize(newRule, null);
+      // The old rules are visible until the reload completes
+      assertEquals(ImmutableSet.of(oldRule), ruleCollection.getRules());
+    });
+    assertEquals(ImmutableSet.of(newRule), ruleCollection.getRules());
+    assertNotEquals(version, ruleCollection.getVersion());
+
+    // A failed reload leaves the rules unchanged
+    assertThrows(IOException.class, () -> ruleCollection.reload(() -> {
+      listener.getValue().onDeserialize(oldRule, null);
+      throw new IOException();
+    }));
+    assertEquals(ImmutableSet.of(newRule), ruleCollection.getRules());
+  }
+
+  @Test
+  public void testUpdatedAndRemovedRules() {
+    RuleSerializer ruleSerializer = mock(RuleSerializer.class);
+    RuleSerializerListeningRuleCollection ruleCollection = new RuleSerializerListeningRuleCollection(ruleSerializer);
+    ArgumentCaptor<RuleSerializerListener> listener = ArgumentCaptor.forClass(RuleSerializerListener.class);
+    verify(ruleSerializer).addListener(listener.capture());
+
+    Rule rule = Rule.newBuilder().setMaxAmount(1).build();
+    Rule otherRule = Rule.newBuilder().setMaxAmount(3).build();
+    listener.getValue().onDeserialize(rule, null);
+    listener.getValue().onDeserialize(otherRule, null);
+
+    Rule updatedRule = Rule.newBuilder().setMaxAmount(2).build();
+    listener.getValue().onDeserialize(updatedRule, null);
+    listener.getValue().onRuleUpdated(rule, updatedRule);
+    assertEquals(ImmutableSet.of(otherRule, updatedRule), ruleCollection.getRules());
+
+    listener.getValue().onRuleRemoved(otherRule);
+    assertEquals(ImmutableSet.of(updatedRule), ruleCollection.getRules());
+  }
+
+  @Test
+  public void testEqualRulesOfSeveralFiles() throws Exception {
+    RuleSerializer ruleSerializer = mock(RuleSerializer.class);
+    RuleSerializerListeningRuleCollection ruleCollection = new RuleSerializerListeningRuleCollection(ruleSerializer);
+    ArgumentCaptor<RuleSerializerListener> listener = ArgumentCaptor.forClass(RuleSerializerListener.class);
+    verify(ruleSerializer).addListener(listener.capture());
+
+    // Two files with the same rule
+    Rule rule = Rule.newBuilder().setMaxAmount(1).build();
+    listener.getValue().onDeserialize(rule, null);
+    listener.getValue().onDeserialize(rule, null);
+
+    // One of them is updated
+    Rule updatedRule = Rule.newBuilder().setMaxAmount(2).build();
+    ruleCollection.update(() -> {
+      listener.getValue().onDeserialize(updatedRule, null);
+      listener.getValue().onRuleUpdated(rule, updatedRule);
+    });
+    assertEquals(ImmutableSet.of(rule, updatedRule), ruleCollection.getRules());
+
+    // The other one is removed
+    listener.getValue().onRuleRemoved(rule);
+    assertEquals(ImmutableSet.of(updatedRule), ruleCollection.getRules());
+  }
+
+  @Test
+  public void testPublishesWithPublisher() throws Exception {
+    RuleSerializer ruleSerializer = mock(RuleSerializer.class);
+    RuleSerializerListeningRuleCollection ruleCollection = new RuleSerializerListeningRuleCollection(ruleSerializer);
+    ArgumentCaptor<RuleSerializerListener> listener = ArgumentCaptor.forClass(RuleSerializerListener.class);
+    verify(ruleSerializer).addListener(listener.capture());
+
+    Rule rule = Rule.newBuilder().setMaxAmount(1).build();
+    Rule otherRule = Rule.newBuilder().setMaxAmount(2).build();
+    List<Runnable> publishes = new ArrayList<>();
+    ruleCollection.reload(() -> listener.getValue().onDeserialize(rule, null), publishes::add);
+    ruleCollection.update(() -> listener.getValue().onDeserialize(otherRule, null), publishes::add);
+    assertEquals(ImmutableSet.of(), ruleCollection.getRules());
+
+    // Published in the order they were loaded
+    publishes.forEach(Runnable::run);
+    assertEquals(ImmutableSet.of(rule, otherRule), ruleCollection.getRules());
+  }
+}
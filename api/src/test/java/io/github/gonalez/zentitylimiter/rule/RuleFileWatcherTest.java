@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.github.gonalez.zentitylimiter.util.converter.MoreObjectConverters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/** Tests for {@link RuleFileWatcher} and {@link FileWritingRuleSerializer#reloadFiles}. */
+public class RuleFileWatcherTest {
+
+  @Test
+  public void testReloadFiles(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("zombies.yml");
+    Path otherFile = dir.resolve("pigs.yml");
+    write(file, "allowedEntities: [ZOMBIE]\nmaxAmount: 1\n");
+    write(otherFile, "allowedEntities: [PIG]\nmaxAmount: 3\n");
+
+    YamlConfigurationRuleSerializer ruleSerializer =
+        new YamlConfigurationRuleSerializer(
+            MoreObjectConverters.DEFAULT_REGISTRY, false, dir, ImmutableMap.of(), false);
+    RuleSerializerListeningRuleCollection ruleCollection = new RuleSerializerListeningRuleCollection(ruleSerializer);
+    ruleSerializer.init();
+    RuleSerializerListener listener = mock(RuleSerializerListener.class);
+    ruleSerializer.addListener(listener);
+
+    Rule rule = Rule.newBuilder().setAllowedEntities(ImmutableList.of("ZOMBIE")).setMaxAmount(1).build();
+    Rule otherRule = Rule.newBuilder().setAllowedEntities(ImmutableList.of("PIG")).setMaxAmount(3).build();
+    assertEquals(ImmutableSet.of(rule, otherRule), ruleCollection.getRules());
+
+    // Modified
+    write(file, "allowedEntities: [ZOMBIE]\nmaxAmount: 2\n");
+    Rule updatedRule = Rule.newBuilder().setAllowedEntities(ImmutableList.of("ZOMBIE")).setMaxAmount(2).build();
+    long version = ruleCollection.getVersion();
+    ruleCollection.update(() -> ruleSerializer.reloadFiles(ImmutableList.of(file)));
+    verify(listener).onRuleUpdated(rule, updatedRule);
+    assertEquals(ImmutableSet.of(otherRule, updatedRule), ruleCollection.getRules());
+    // The update is published at once
+    assertEquals(version + 1, ruleCollection.getVersion());
+
+    // Unchanged files are skipped
+    clearInvocations(listener);
+    ruleCollection.update(() -> ruleSerializer.reloadFiles(ImmutableList.of(file)));
+    verifyNoInteractions(listener);
+    assertEquals(version + 1, ruleCollection.getVersion());
+
+    // Created
+    Path newFile = dir.resolve("cows.yml");
+    write(newFile, "allowedEntities: [COW]\nmaxAmount: 4\n");
+    Rule newRule = Rule.newBuilder().setAllowedEntities(ImmutableList.of("COW")).setMaxAmount(4).build();
+    ruleCollection.update(() -> ruleSerializer.reloadFiles(ImmutableList.of(newFile)));
+    verify(listener).onDeserialize(eq(newRule), any());
+    assertEquals(ImmutableSet.of(otherRule, updatedRule, newRule), ruleCollection.getRules());
+
+    // Deleted
+    Files.delete(otherFile);
+    ruleCollection.update(() -> ruleSerializer.reloadFiles(ImmutableList.of(otherFile)));
+    verify(listener).onRuleRemoved(otherRule);
+    assertEquals(ImmutableSet.of(updatedRule, newRule), ruleCollection.getRules());
+  }
+
+  @Test
+  public void testReloadsChangedFiles(@TempDir Path dir) throws Exception {
+    BlockingQueue<Iterable<Path>> reloads = new LinkedBlockingQueue<>();
+    try (RuleFileWatcher ruleFileWatcher =
+             new RuleFileWatcher(dir, reloads::add, 50, Logger.getAnonymousLogger())) {
+      ruleFileWatcher.start();
+
+      Path file = dir.resolve("zombies.yml").toAbsolutePath().normalize();
+      write(file, "maxAmount: 1\n");
+      Iterable<Path> changedPaths = reloads.poll(10, TimeUnit.SECONDS);
+      assertNotNull(changedPaths);
+      assertEquals(ImmutableSet.of(file), ImmutableSet.copyOf(changedPaths));
+    }
+  }
+
+  private static void write(Path file, String contents) throws Exception {
+    Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/** Tests for {@link RuleFileWriter}. */
+public class RuleFileWriterTest {
+
+  @Test
+  public void testCoalescesWrites(@TempDir Path dir) throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    RuleFileWriter ruleFileWriter = new RuleFileWriter(tasks::add, Logger.getAnonymousLogger());
+
+    File file = dir.resolve("rule.yml").toFile();
+    File otherFile = dir.resolve("other.yml").toFile();
+    ruleFileWriter.write(file, "a");
+    ruleFileWriter.write(file, "b");
+    ruleFileWriter.write(otherFile, "c");
+    // A single flush is scheduled for all the writes
+    assertEquals(1, tasks.size());
+    assertFalse(file.exists());
+
+    tasks.get(0).run();
+    assertEquals("b", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    assertEquals("c", new String(Files.readAllBytes(otherFile.toPath()), StandardCharsets.UTF_8));
+    // No temporary file is left
+    assertEquals(2, dir.toFile().list().length);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Tests for {@link RuleSchema}. */
+public class RuleSchemaTest {
+
+  @Test
+  public void testGeneratedSchemaMatchesReflectiveSchema() {
+    RuleSchema<Rule> generatedSchema = RuleSchema.findGenerated(Rule.class);
+    assertNotNull(generatedSchema);
+    RuleSchema<Rule> reflectiveSchema = new ReflectiveRuleSchema<>(Rule.class);
+    assertEquals(reflectiveSchema.propertyTypes(), generatedSchema.propertyTypes());
+
+    Rule rule = Rule.newBuilder()
+        .setAllowedEntities(ImmutableList.of("ZOMBIE"))
+        .setRadius(7)
+        .setMaxAmountPerChunk(3)
+        .build();
+    Map<String, Object> values = new LinkedHashMap<>();
+    generatedSchema.visitProperties(rule, (rule1, valueName, valueType, value) -> values.put(valueName, value));
+
+    RuleSchema.Builder<Rule> builder = generatedSchema.newBuilder();
+    values.forEach(builder::set);
+    assertEquals(rule, builder.build());
+
+    // Numbers are converted to the property type
+    RuleSchema.Builder<Rule> numberBuilder = generatedSchema.newBuilder();
+    numberBuilder.set("radius", 7);
+    assertEquals(7, numberBuilder.build().radius());
+
+    assertThrows(IllegalArgumentException.class, () -> generatedSchema.newBuilder().set("unknown", ImmutableMap.of()));
+  }
+}
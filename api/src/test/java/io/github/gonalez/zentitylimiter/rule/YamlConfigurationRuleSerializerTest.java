@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.github.gonalez.zentitylimiter.util.converter.MoreObjectConverters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/** Tests for {@link YamlConfigurationRuleSerializer}. */
+public class YamlConfigurationRuleSerializerTest {
+
+  @Test
+  public void testLoadsFilesInPathOrder(@TempDir Path dir) throws Exception {
+    List<Rule> expectedRules = new ArrayList<>();
+    // Created in reverse order, the files are parsed in parallel but deserialized in the order of their paths
+    for (int i = 31; i >= 0; i--) {
+      Path file = dir.resolve(String.format("dir%d/rule%02d.yml", i % 4, i));
+      Files.createDirectories(file.getParent());
+      Files.write(file, ("allowedEntities: [ZOMBIE]\nmaxAmount: " + i + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+    for (int dirIndex = 0; dirIndex < 4; dirIndex++) {
+      for (int i = dirIndex; i < 32; i += 4) {
+        expectedRules.add(Rule.newBuilder().setAllowedEntities(ImmutableList.of("ZOMBIE")).setMaxAmount(i).build());
+      }
+    }
+
+    YamlConfigurationRuleSerializer ruleSerializer =
+        new YamlConfigurationRuleSerializer(
+            MoreObjectConverters.DEFAULT_REGISTRY, false, dir, ImmutableMap.of(), false);
+    RuleSerializerListener listener = mock(RuleSerializerListener.class);
+    ruleSerializer.addListener(listener);
+    ruleSerializer.init();
+    ruleSerializer.reload();
+
+    ArgumentCaptor<Rule> rules = ArgumentCaptor.forClass(Rule.class);
+    verify(listener, times(64)).onDeserialize(rules.capture(), any());
+    assertEquals(expectedRules, rules.getAllValues().subList(0, 32));
+    // The order is the same on every load
+    assertEquals(expectedRules, rules.getAllValues().subList(32, 64));
+  }
+
+  @Test
+  public void testDoesNotWriteBackEquivalentValues(@TempDir Path dir) throws Exception {
+    // The radius is read as an Integer, and the options as a map or a section
+    Files.write(dir.resolve("rule.yml"), (
+        "allowedEntities: [ZOMBIE]\n"
+            + "allowedWorlds: []\n"
+            + "radius: 3\n"
+            + "maxAmount: 2\n"
+            + "maxAmountPerChunk: -1\n"
+            + "options: {tamed: true}\n"
+            + "recursively: true\n").getBytes(StandardCharsets.UTF_8));
+
+    List<Runnable> writes = new ArrayList<>();
+    YamlConfigurationRuleSerializer ruleSerializer =
+        new YamlConfigurationRuleSerializer(
+            MoreObjectConverters.DEFAULT_REGISTRY, false, dir, ImmutableMap.of(),
+            new RuleFileWriter(writes::add, Logger.getAnonymousLogger()));
+    ruleSerializer.init();
+    assertTrue(writes.isEmpty());
+  }
+}
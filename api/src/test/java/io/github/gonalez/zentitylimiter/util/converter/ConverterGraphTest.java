@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.util.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Tests for {@link ConverterGraph}. */
+public class ConverterGraphTest {
+  /** Converts a comma separated String to a List. */
+  private static class SplittingConverter implements ObjectConverter<String, List> {
+    @Override
+    public Class<String> requiredType() {
+      return String.class;
+    }
+
+    @Override
+    public Class<List> convertedType() {
+      return List.class;
+    }
+
+    @Override
+    public List convert(String key) {
+      return new ArrayList<>(Arrays.asList(key.split(",")));
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Test
+  public void testFindsShortestChain() {
+    ObjectConverter.Registry registry =
+        ObjectConverter.Registry.newBuilder()
+            .addConverter(new ImmutableListConverter<>())
+            .addConverter(new ImmutableMapConverter<>())
+            .addConverter(new SplittingConverter())
+            .build();
+
+    ObjectConverter converter = registry.findConverter(String.class, ImmutableList.class);
+    assertNotNull(converter);
+    assertEquals(ImmutableList.of("a", "b"), converter.convert("a,b"));
+    // Both the chains and the misses are cached
+    assertSame(converter, registry.findConverter(String.class, ImmutableList.class));
+    assertNull(registry.findConverter(String.class, ImmutableMap.class));
+    assertNull(registry.findConverter(String.class, ImmutableMap.class));
+
+    assertEquals(ImmutableList.class, registry.getConvertedType(ArrayList.class));
+    assertEquals(Integer.class, registry.getConvertedType(Integer.class));
+  }
+}
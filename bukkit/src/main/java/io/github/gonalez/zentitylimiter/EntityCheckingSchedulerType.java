@@ -0,0 +1,27 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+/** Available schedulers for {@link EntityCheckingType#INTERVAL} checking. */
+public enum EntityCheckingSchedulerType {
+  // Checks on the server thread, spending at most the configured budget every tick
+  TICK,
+  // Checks on a separate thread
+  THREAD,
+  // Captures snapshots of the entities on the server thread, checks the snapshots on worker threads,
+  // and handles the exceeded entities back on the server thread
+  SNAPSHOT,
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+/** Available ways for finding the entities around a checked entity. */
+public enum EntityExtractorType {
+  // Asks the server for the nearby entities (World#getNearbyEntities)
+  DEFAULT,
+  // Uses a spatial index of the entities of the rules, maintained by the plugin
+  INDEXED,
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.github.gonalez.zentitylimiter.entity.FreezingEntityHandler;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+
+/**
+ * Stops tracking the frozen entities that die, and thaws the entities left frozen while they were not loaded, for
+ * {@link EntityHandlerType#FREEZE}.
+ */
+class EntityFreezeListener implements Listener {
+  private final FreezingEntityHandler freezingEntityHandler;
+
+  EntityFreezeListener(FreezingEntityHandler freezingEntityHandler) {
+    this.freezingEntityHandler = checkNotNull(freezingEntityHandler);
+  }
+
+  @EventHandler
+  public void onEntityDeath(EntityDeathEvent entityDeathEvent) {
+    freezingEntityHandler.forget(entityDeathEvent.getEntity());
+  }
+
+  @EventHandler
+  public void onChunkLoad(ChunkLoadEvent chunkLoadEvent) {
+    for (Entity entity : chunkLoadEvent.getChunk().getEntities()) {
+      freezingEntityHandler.thawIfLeftFrozen(entity);
+    }
+  }
+}
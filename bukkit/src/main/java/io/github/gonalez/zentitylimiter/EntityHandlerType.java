@@ -0,0 +1,26 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+/** Available ways for handling the entities that exceeded the limit of a rule. */
+public enum EntityHandlerType {
+  // Removes the entities, a few every tick
+  REMOVE,
+  // Merges the entities into a stack of their type, which splits back when it dies
+  STACK,
+  // Disables the AI of the entities until they are within the limit again, if the server supports it
+  FREEZE,
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+/** The command of the plugin, currently only to reload the rules. */
+class EntityLimiterCommand implements CommandExecutor {
+  private final EntityLimiterPlugin plugin;
+
+  public EntityLimiterCommand(EntityLimiterPlugin plugin) {
+    this.plugin = checkNotNull(plugin);
+  }
+
+  @Override
+  public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+    if (args.length != 1 || !args[0].equalsIgnoreCase("reload")) {
+      return false;
+    }
+    sender.sendMessage(ChatColor.GRAY + "Reloading the rules...");
+    plugin.reloadRules(sender);
+    return true;
+  }
+}
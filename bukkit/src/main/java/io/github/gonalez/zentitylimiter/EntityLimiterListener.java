@@ -17,33 +17,63 @@ package io.github.gonalez.zentitylimiter;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableList;
 import io.github.gonalez.zentitylimiter.entity.EntityChecker;
+import io.github.gonalez.zentitylimiter.entity.EntitySpawnGate;
+import io.github.gonalez.zentitylimiter.rule.Rule;
 import io.github.gonalez.zentitylimiter.rule.RuleCollection;
 import org.bukkit.entity.Entity;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 
-/** Subscribes to all necessary events for {@link io.github.gonalez.zentitylimiter.EntityCheckingType#EVENT} functionality. */
+import javax.annotation.Nullable;
+
+/**
+ * Subscribes to all necessary events for {@link io.github.gonalez.zentitylimiter.EntityCheckingType#EVENT} functionality.
+ *
+ * <p>If an {@link EntitySpawnGate} is given, the spawns that would exceed a limit are cancelled instead of checking
+ * the spawned entity, see {@link EntitySpawnPolicy#CANCEL}. The {@link CreatureSpawnEvent.SpawnReason#CUSTOM custom}
+ * spawns of plugins are checked as usual instead.
+ */
 class EntityLimiterListener implements Listener {
   private final RuleCollection.RuleCollectionFinder ruleCollectionFinder;
   private final EntityChecker entityChecker;
+  @Nullable private final EntitySpawnGate entitySpawnGate;
 
   public EntityLimiterListener(
       RuleCollection.RuleCollectionFinder ruleCollectionFinder,
       EntityChecker entityChecker) {
+    this(ruleCollectionFinder, entityChecker, null);
+  }
+
+  public EntityLimiterListener(
+      RuleCollection.RuleCollectionFinder ruleCollectionFinder,
+      EntityChecker entityChecker,
+      @Nullable EntitySpawnGate entitySpawnGate) {
     this.ruleCollectionFinder = checkNotNull(ruleCollectionFinder);
     this.entityChecker = checkNotNull(entityChecker);
+    this.entitySpawnGate = entitySpawnGate;
   }
 
-  private EntityChecker.ResultType checkEntity(Entity entity) {
-    return entityChecker.check(entity, ruleCollectionFinder.findRule(entity));
+  private void checkEntity(Entity entity) {
+    entityChecker.checkAll(entity, ruleCollectionFinder.findRules(entity));
   }
 
   @EventHandler
   public void onItemSpawn(CreatureSpawnEvent creatureSpawnEvent) {
     if (creatureSpawnEvent.isCancelled())
       return;
-    checkEntity(creatureSpawnEvent.getEntity());
+    Entity entity = creatureSpawnEvent.getEntity();
+    // The spawns of plugins, such as the rest of a dead stack of StackingEntityHandler, are never cancelled
+    if (entitySpawnGate != null
+        && creatureSpawnEvent.getSpawnReason() != CreatureSpawnEvent.SpawnReason.CUSTOM) {
+      ImmutableList<Rule> rules = ruleCollectionFinder.findRules(entity);
+      if (!rules.isEmpty() && entitySpawnGate.wouldExceed(entity, rules)) {
+        creatureSpawnEvent.setCancelled(true);
+      }
+      return;
+    }
+    checkEntity(entity);
   }
 }
@@ -15,38 +15,72 @@
  */
 package io.github.gonalez.zentitylimiter;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import io.github.gonalez.zentitylimiter.entity.*;
+import io.github.gonalez.zentitylimiter.entity.index.ChunkEntityCounter;
+import io.github.gonalez.zentitylimiter.entity.index.ChunkLimitingEntityChecker;
+import io.github.gonalez.zentitylimiter.entity.index.EntityTracker;
+import io.github.gonalez.zentitylimiter.entity.index.IndexedEntityExtractor;
+import io.github.gonalez.zentitylimiter.entity.index.SpatialEntityIndex;
+import io.github.gonalez.zentitylimiter.entity.snapshot.EntitySnapshotEvaluator;
+import io.github.gonalez.zentitylimiter.entity.snapshot.SnapshotEntityCheckingTask;
 import io.github.gonalez.zentitylimiter.rule.FileWritingRuleSerializer;
+import io.github.gonalez.zentitylimiter.rule.IndexedRuleCollectionFinder;
 import io.github.gonalez.zentitylimiter.rule.Rule;
 import io.github.gonalez.zentitylimiter.rule.RuleCollection;
+import io.github.gonalez.zentitylimiter.rule.RuleFileWatcher;
+import io.github.gonalez.zentitylimiter.rule.RuleFileWriter;
 import io.github.gonalez.zentitylimiter.rule.RuleSerializerListeningRuleCollection;
 import io.github.gonalez.zentitylimiter.rule.YamlConfigurationRuleSerializer;
 import io.github.gonalez.zentitylimiter.util.converter.MoreObjectConverters;
 import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
 import org.bukkit.World;
+import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Entity;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 /** The main class of the plugin. */
 public class EntityLimiterPlugin extends JavaPlugin {
+  // The entities left frozen by EntityHandlerType#FREEZE while unloaded, one unique id per line
+  private static final String UNLOADED_FROZEN_FILE = "frozen-entities.txt";
+
   /** Actions to execute upon plugin disable. */
   private final List<Runnable> disableActions = new ArrayList<>();
 
   @Nullable
   private EntityLimiterPluginVariables pluginVariables;
 
+  @Nullable
+  private FileWritingRuleSerializer ruleSerializer;
+  @Nullable
+  private RuleSerializerListeningRuleCollection ruleCollection;
+
+  private ImmutableList<EntityTracker> entityTrackers = ImmutableList.of();
+
   @Override
   public void onEnable() {
     FileConfiguration fileConfiguration = getConfig();
@@ -57,7 +91,12 @@ public class EntityLimiterPlugin extends JavaPlugin {
     try {
       EntityLimiterPluginVariables.Builder variablesBuilder = EntityLimiterPluginVariables.newBuilder();
 
-      FileWritingRuleSerializer ruleSerializer =
+      // The rule files are written back off the server thread, and the pending writes are finished on disable
+      RuleFileWriter ruleFileWriter =
+          new RuleFileWriter(task -> getServer().getScheduler().runTaskAsynchronously(this, task), getLogger());
+      disableActions.add(ruleFileWriter::close);
+
+      FileWritingRuleSerializer ruleSerializer = this.ruleSerializer =
           new YamlConfigurationRuleSerializer(
               MoreObjectConverters.DEFAULT_REGISTRY,
               false,
@@ -65,70 +104,112 @@ public class EntityLimiterPlugin extends JavaPlugin {
               ImmutableMap.of(
                   "myRule",
                   Rule.newBuilder().build()), // we already cover the defaults in Rule#newBuilder
-              true);
+              ruleFileWriter);
 
-      RuleCollection ruleCollection = new RuleSerializerListeningRuleCollection(ruleSerializer);
+      RuleSerializerListeningRuleCollection ruleCollection = this.ruleCollection =
+          new RuleSerializerListeningRuleCollection(ruleSerializer);
       variablesBuilder.setRuleCollection(ruleCollection);
+      if (fileConfiguration.getBoolean("rules.cache", true)) {
+        ruleSerializer.setCacheFile(getDataFolder().toPath().resolve("rules.cache"));
+      }
       ruleSerializer.init();
 
+      if (fileConfiguration.getBoolean("rules.watch", false)) {
+        RuleFileWatcher ruleFileWatcher =
+            new RuleFileWatcher(
+                getDataFolder().toPath().resolve("rules"),
+                // Loaded on the watcher thread, and published between ticks like reloadRules does
+                changedPaths -> ruleCollection.update(
+                    () -> ruleSerializer.reloadFiles(changedPaths),
+                    publish -> getServer().getScheduler().runTask(this, () -> {
+                      publish.run();
+                      // The changed rules may need entities that were not tracked before
+                      trackLoadedEntities();
+                    })),
+                fileConfiguration.getLong("rules.watch-debounce", 500),
+                getLogger());
+        disableActions.add(() -> {
+          try {
+            ruleFileWatcher.close();
+          } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Could not stop watching the rule files", e);
+          }
+        });
+        ruleFileWatcher.start();
+      }
+
       RuleDescription.Provider ruleDescriptionProvider =
-          new CachingRuleDescriptionProvider(DefaultRuleDescription::new);
+          new CachingRuleDescriptionProvider(DefaultRuleDescription::new, ruleCollection);
       variablesBuilder.setRuleDescriptionProvider(ruleDescriptionProvider);
 
+      EntityCheckingType entityCheckingType = EntityCheckingType.valueOf(
+          fileConfiguration.getString("checking.type").toUpperCase(Locale.ROOT));
+
+      ImmutableList<EntityHandler> entityHandlers = createEntityHandlers(fileConfiguration);
+      ImmutableList.Builder<EntityTracker> entityTrackers = ImmutableList.builder();
+      EntityExtractor entityExtractor = createEntityExtractor(fileConfiguration, ruleCollection, entityTrackers);
       EntityChecker entityChecker = new EntityHandlingEntityChecker(
           ruleDescriptionProvider,
-          new RecursivelyEntityExtractor(
-              new ClassEntityExtractorFilterExtractor(entity -> entity.getType().getEntityClass())),
-          ImmutableList.of(Entity::remove));
+          entityExtractor,
+          entityHandlers,
+          // Clusters are only tracked per cycle, so this is only possible with the interval checking
+          entityCheckingType == EntityCheckingType.INTERVAL
+              && fileConfiguration.getBoolean("checking.cluster-once", true));
+
+      // Only count the entities of the rules which have a per chunk limit, the rules may have one after a reload.
+      // The handled entities are not counted, so the chunks can get back under their limit
+      ChunkEntityCounter chunkEntityCounter =
+          new ChunkEntityCounter(
+              new RuleEntityTypes(ruleCollection, rule -> rule.maxAmountPerChunk() >= 0, getLogger()),
+              entity -> ChunkLimitingEntityChecker.isHandled(entity, entityHandlers));
+      entityTrackers.add(chunkEntityCounter);
+      entityChecker = new ChunkLimitingEntityChecker(entityChecker, chunkEntityCounter, entityHandlers);
+      this.entityTrackers = entityTrackers.build();
+      startEntityTrackers(fileConfiguration);
+
       variablesBuilder.setEntityChecker(entityChecker);
       entityChecker.init(this);
 
       this.pluginVariables = variablesBuilder.build();
 
-      RuleCollection.RuleCollectionFinder ruleCollectionFinder =
-          new AllowedEntitiesRuleCollectionFinder(ruleCollection);
+      IndexedRuleCollectionFinder ruleCollectionFinder =
+          new IndexedRuleCollectionFinder(ruleCollection, Bukkit::getWorld, getLogger());
+      getServer().getPluginManager().registerEvents(new RuleWorldListener(ruleCollectionFinder), this);
+
+      getCommand("zentitylimiter").setExecutor(new EntityLimiterCommand(this));
 
       PluginManager pluginManager = getServer().getPluginManager();
-      switch (EntityCheckingType.valueOf(
-          fileConfiguration.getString("checking.type").toUpperCase(Locale.US))) {
+      switch (entityCheckingType) {
         case EVENT:
+          EntitySpawnPolicy entitySpawnPolicy = EntitySpawnPolicy.valueOf(
+              fileConfiguration.getString("checking.spawn-policy", "CHECK").toUpperCase(Locale.ROOT));
           pluginManager.registerEvents(
-              new EntityLimiterListener(ruleCollectionFinder, entityChecker), this);
+              new EntityLimiterListener(
+                  ruleCollectionFinder,
+                  entityChecker,
+                  entitySpawnPolicy == EntitySpawnPolicy.CANCEL
+                      ? new EntitySpawnGate(
+                          ruleDescriptionProvider, entityExtractor, chunkEntityCounter, entityHandlers)
+                      : null),
+              this);
           break;
         case INTERVAL:
           EntityCheckingTask entityCheckingTask =
-              new RunnableEntityCheckingTask(
-                  ruleCollectionFinder,
-                  TimeUnit.SECONDS,
-                  fileConfiguration.getInt("checking.interval", 60));
+              createEntityCheckingTask(
+                  fileConfiguration, ruleCollectionFinder, ruleDescriptionProvider, entityHandlers);
           disableActions.add(entityCheckingTask::shutdown);
-          for (Rule rule : ruleCollection.getRules()) {
-            entityCheckingTask.addCallback(new EntityCheckingTask.Callback() {
-              @Override
-              public void onAllEntitiesChecked() {
-                Set<World> allowedWorlds = new HashSet<>();
-                if (rule.allowedWorlds().isEmpty()) {
-                  allowedWorlds.addAll(getServer().getWorlds());
-                } else {
-                  for (String worldName : rule.allowedWorlds()) {
-                    World world = Bukkit.getWorld(worldName);
-                    if (world != null) {
-                      allowedWorlds.add(world);
-                    }
-                  }
-                }
-                for (World world : allowedWorlds) {
-                  getServer().getScheduler().runTask(EntityLimiterPlugin.this,
-                      () -> {
-                        for (Entity entity : world.getEntities()) {
-                          entityCheckingTask.addEntityForChecking(entity);
-                        }
-                      });
-                }
-              }
-            });
-            entityCheckingTask.addEntityChecker(entityChecker);
-          }
+          long intervalTicks = fileConfiguration.getInt("checking.interval", 60) * 20L;
+          // A single feeder for the worlds of all the rules, so each entity is only added once
+          ChunkSweepingEntityFeeder entityFeeder =
+              new ChunkSweepingEntityFeeder(
+                  this,
+                  () -> getAllowedWorlds(ruleCollection.getRules()),
+                  entityCheckingTask,
+                  intervalTicks,
+                  fileConfiguration.getInt("checking.min-chunks-per-tick", 1));
+          disableActions.add(entityFeeder::shutdown);
+          entityFeeder.start();
+          entityCheckingTask.addEntityChecker(entityChecker);
           entityCheckingTask.start();
           break;
       }
@@ -137,6 +218,213 @@ public class EntityLimiterPlugin extends JavaPlugin {
     }
   }
 
+  private ImmutableList<EntityHandler> createEntityHandlers(FileConfiguration fileConfiguration) {
+    switch (EntityHandlerType.valueOf(
+        fileConfiguration.getString("checking.handler", "REMOVE").toUpperCase(Locale.ROOT))) {
+      case STACK:
+        getServer().getPluginManager().registerEvents(new EntityStackListener(), this);
+        return ImmutableList.of(
+            new StackingEntityHandler(fileConfiguration.getDouble("checking.stacking.merge-radius", 16)));
+      case FREEZE:
+        if (FreezingEntityHandler.isSupported()) {
+          return ImmutableList.of(createFreezingHandler(fileConfiguration));
+        }
+        getLogger().warning("This server version cannot disable the AI of entities, removing them instead");
+        return ImmutableList.of(createRemovingHandler(fileConfiguration));
+      case REMOVE:
+      default:
+        return ImmutableList.of(createRemovingHandler(fileConfiguration));
+    }
+  }
+
+  private EntityHandler createRemovingHandler(FileConfiguration fileConfiguration) {
+    // The entities are removed a few every tick, so removing many entities at once does not lag the server
+    BatchingEntityHandler removingEntityHandler =
+        new BatchingEntityHandler(
+            this,
+            ImmutableList.of(Entity::remove),
+            fileConfiguration.getInt("checking.removal.max-per-tick", 200),
+            fileConfiguration.getLong("checking.removal.tick-budget", 1000000));
+    disableActions.add(removingEntityHandler::shutdown);
+    removingEntityHandler.start();
+    return removingEntityHandler;
+  }
+
+  private EntityHandler createFreezingHandler(FileConfiguration fileConfiguration) {
+    FreezingEntityHandler freezingEntityHandler =
+        new FreezingEntityHandler(fileConfiguration.getInt("checking.freezing.max-thaw-per-check", 10));
+    // The entities that were frozen while unloaded when the plugin was disabled, they are thawed once loaded
+    Path unloadedFrozenFile = getDataFolder().toPath().resolve(UNLOADED_FROZEN_FILE);
+    try {
+      if (Files.exists(unloadedFrozenFile)) {
+        List<UUID> unloadedFrozenEntities = new ArrayList<>();
+        for (String line : Files.readAllLines(unloadedFrozenFile, StandardCharsets.UTF_8)) {
+          if (!line.trim().isEmpty()) {
+            unloadedFrozenEntities.add(UUID.fromString(line.trim()));
+          }
+        }
+        freezingEntityHandler.addUnloadedFrozenEntities(unloadedFrozenEntities);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      getLogger().log(Level.WARNING, "Could not read the entities left frozen", e);
+    }
+    for (World world : getServer().getWorlds()) {
+      for (Entity entity : world.getEntities()) {
+        freezingEntityHandler.thawIfLeftFrozen(entity);
+      }
+    }
+    disableActions.add(() -> {
+      freezingEntityHandler.thawAll();
+      try {
+        ImmutableSet<UUID> unloadedFrozenEntities = freezingEntityHandler.getUnloadedFrozenEntities();
+        if (unloadedFrozenEntities.isEmpty()) {
+          Files.deleteIfExists(unloadedFrozenFile);
+        } else {
+          Files.createDirectories(unloadedFrozenFile.getParent());
+          Files.write(
+              unloadedFrozenFile,
+              Iterables.transform(unloadedFrozenEntities, UUID::toString),
+              StandardCharsets.UTF_8);
+        }
+      } catch (IOException e) {
+        getLogger().log(Level.WARNING, "Could not save the entities left frozen", e);
+      }
+    });
+    getServer().getPluginManager().registerEvents(new EntityFreezeListener(freezingEntityHandler), this);
+    return freezingEntityHandler;
+  }
+
+  /** @return the union of the allowed worlds of the given rules. */
+  private Set<World> getAllowedWorlds(Iterable<Rule> rules) {
+    Set<World> allowedWorlds = new HashSet<>();
+    for (Rule rule : rules) {
+      if (rule.allowedWorlds().isEmpty()) {
+        allowedWorlds.addAll(getServer().getWorlds());
+        break;
+      }
+      for (String worldName : rule.allowedWorlds()) {
+        World world = Bukkit.getWorld(worldName);
+        if (world != null) {
+          allowedWorlds.add(world);
+        }
+      }
+    }
+    return allowedWorlds;
+  }
+
+  /**
+   * Loads the rules again on another thread, and replaces the current rules with them on the server thread.
+   * The entities being checked finish their check with the rules they were found with.
+   */
+  void reloadRules(CommandSender sender) {
+    FileWritingRuleSerializer ruleSerializer = checkNotNull(this.ruleSerializer);
+    RuleSerializerListeningRuleCollection ruleCollection = checkNotNull(this.ruleCollection);
+    getServer().getScheduler().runTaskAsynchronously(this, () -> {
+      try {
+        ruleCollection.reload(ruleSerializer::reload, publish -> getServer().getScheduler().runTask(this, () -> {
+          // Between ticks, so a tick never sees both the old and the new rules
+          publish.run();
+          // The new rules may need entities that were not tracked before
+          trackLoadedEntities();
+          sender.sendMessage(ChatColor.GREEN + "Reloaded " + ruleCollection.getRules().size() + " rules");
+        }));
+      } catch (IOException | RuntimeException e) {
+        getLogger().log(Level.SEVERE, "Could not reload the rules", e);
+        getServer().getScheduler().runTask(this, () ->
+            sender.sendMessage(ChatColor.RED + "Could not reload the rules, see the console for details"));
+      }
+    });
+  }
+
+  private void trackLoadedEntities() {
+    for (World world : getServer().getWorlds()) {
+      for (Chunk chunk : world.getLoadedChunks()) {
+        for (Entity entity : chunk.getEntities()) {
+          for (EntityTracker entityTracker : entityTrackers) {
+            entityTracker.track(entity);
+          }
+        }
+      }
+    }
+  }
+
+  /** Tracks the entities of the loaded chunks and keeps the trackers updated from then on. */
+  private void startEntityTrackers(FileConfiguration fileConfiguration) {
+    if (entityTrackers.isEmpty()) {
+      return;
+    }
+    trackLoadedEntities();
+    getServer().getPluginManager().registerEvents(new EntityTrackerListener(entityTrackers), this);
+    long reconcileInterval = fileConfiguration.getLong("checking.tracking.reconcile-interval", 20);
+    ImmutableList<EntityTracker> entityTrackers = this.entityTrackers;
+    getServer().getScheduler().runTaskTimer(this, () -> {
+      for (EntityTracker entityTracker : entityTrackers) {
+        entityTracker.reconcile();
+      }
+    }, reconcileInterval, reconcileInterval);
+  }
+
+  private EntityExtractor createEntityExtractor(
+      FileConfiguration fileConfiguration,
+      RuleCollection ruleCollection,
+      ImmutableList.Builder<EntityTracker> entityTrackers) {
+    EntityExtractorFilterExtractor filterExtractor =
+        new ClassEntityExtractorFilterExtractor(entity -> entity.getType().getEntityClass());
+    switch (EntityExtractorType.valueOf(
+        fileConfiguration.getString("checking.extractor", "DEFAULT").toUpperCase(Locale.ROOT))) {
+      case INDEXED:
+        // Only the entities of the rules can be extracted, so there is no need to track the others
+        SpatialEntityIndex entityIndex =
+            new SpatialEntityIndex(
+                new RuleEntityTypes(ruleCollection, rule -> true, getLogger()),
+                fileConfiguration.getInt("checking.index.cell-shift", 4));
+        entityTrackers.add(entityIndex);
+        return new IndexedEntityExtractor(
+            filterExtractor, entityIndex,
+            fileConfiguration.getInt("checking.recursive.max-entities", 512),
+            fileConfiguration.getInt("checking.recursive.max-depth", 32));
+      case DEFAULT:
+      default:
+        return new RecursivelyEntityExtractor(
+            filterExtractor,
+            fileConfiguration.getInt("checking.recursive.max-entities", 512),
+            fileConfiguration.getInt("checking.recursive.max-depth", 32));
+    }
+  }
+
+  private EntityCheckingTask createEntityCheckingTask(
+      FileConfiguration fileConfiguration,
+      RuleCollection.RuleCollectionFinder ruleCollectionFinder,
+      RuleDescription.Provider ruleDescriptionProvider,
+      ImmutableList<EntityHandler> entityHandlers) {
+    long interval = fileConfiguration.getInt("checking.interval", 60);
+    long tickBudget = fileConfiguration.getLong("checking.tick-budget", TimeUnit.MILLISECONDS.toNanos(2));
+    switch (EntityCheckingSchedulerType.valueOf(
+        fileConfiguration.getString("checking.scheduler", "TICK").toUpperCase(Locale.ROOT))) {
+      case THREAD:
+        return new RunnableEntityCheckingTask(ruleCollectionFinder, TimeUnit.SECONDS, interval);
+      case SNAPSHOT:
+        return new SnapshotEntityCheckingTask(
+            this,
+            ruleCollectionFinder,
+            new EntitySnapshotEvaluator(
+                ruleDescriptionProvider,
+                fileConfiguration.getInt("checking.recursive.max-entities", 512),
+                fileConfiguration.getInt("checking.recursive.max-depth", 32)),
+            entityHandlers,
+            ForkJoinPool.commonPool(),
+            TimeUnit.SECONDS, interval,
+            tickBudget);
+      case TICK:
+      default:
+        return new TickingEntityCheckingTask(
+            this,
+            ruleCollectionFinder,
+            TimeUnit.SECONDS, interval,
+            tickBudget);
+    }
+  }
+
   @Nullable
   public EntityLimiterPluginVariables getPluginVariables() {
     return pluginVariables;
@@ -147,5 +435,9 @@ public class EntityLimiterPlugin extends JavaPlugin {
     for (Runnable disableActions : this.disableActions) {
       disableActions.run();
     }
+    // Once nothing checks the entities anymore
+    if (ruleCollection != null) {
+      ruleCollection.invalidateCaches();
+    }
   }
 }
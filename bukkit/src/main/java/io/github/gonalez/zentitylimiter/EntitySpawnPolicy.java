@@ -0,0 +1,24 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+/** Available ways for handling the entities that spawn, for {@link EntityCheckingType#EVENT}. */
+public enum EntitySpawnPolicy {
+  // Lets the entity spawn, and checks it afterwards
+  CHECK,
+  // Cancels the spawn if the entity would exceed the limit of any of its rules
+  CANCEL,
+}
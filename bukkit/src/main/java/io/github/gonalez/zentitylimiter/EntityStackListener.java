@@ -0,0 +1,30 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+import io.github.gonalez.zentitylimiter.entity.StackingEntityHandler;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDeathEvent;
+
+/** Spawns the rest of a stack when it dies, for {@link EntityHandlerType#STACK}. */
+class EntityStackListener implements Listener {
+
+  @EventHandler
+  public void onEntityDeath(EntityDeathEvent entityDeathEvent) {
+    StackingEntityHandler.unstack(entityDeathEvent.getEntity());
+  }
+}
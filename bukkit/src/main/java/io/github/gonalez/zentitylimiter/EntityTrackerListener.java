@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.zentitylimiter.entity.index.EntityTracker;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.entity.ItemSpawnEvent;
+import org.bukkit.event.entity.ProjectileLaunchEvent;
+import org.bukkit.event.vehicle.VehicleCreateEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Keeps the given {@link EntityTracker}s updated with the entities of the server. The creatures, items,
+ * projectiles and vehicles are tracked when spawned, the other entities once their chunk is loaded. The entities
+ * removed without dying, such as picked up items, are forgotten when the trackers are reconciled.
+ */
+class EntityTrackerListener implements Listener {
+  private final ImmutableList<EntityTracker> entityTrackers;
+
+  public EntityTrackerListener(ImmutableList<EntityTracker> entityTrackers) {
+    this.entityTrackers = checkNotNull(entityTrackers);
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onCreatureSpawn(CreatureSpawnEvent creatureSpawnEvent) {
+    track(creatureSpawnEvent.getEntity());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onItemSpawn(ItemSpawnEvent itemSpawnEvent) {
+    track(itemSpawnEvent.getEntity());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onProjectileLaunch(ProjectileLaunchEvent projectileLaunchEvent) {
+    track(projectileLaunchEvent.getEntity());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onVehicleCreate(VehicleCreateEvent vehicleCreateEvent) {
+    track(vehicleCreateEvent.getVehicle());
+  }
+
+  private void track(Entity entity) {
+    for (EntityTracker entityTracker : entityTrackers) {
+      entityTracker.track(entity);
+    }
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onEntityDeath(EntityDeathEvent entityDeathEvent) {
+    for (EntityTracker entityTracker : entityTrackers) {
+      entityTracker.untrack(entityDeathEvent.getEntity());
+    }
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onChunkLoad(ChunkLoadEvent chunkLoadEvent) {
+    for (Entity entity : chunkLoadEvent.getChunk().getEntities()) {
+      track(entity);
+    }
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onChunkUnload(ChunkUnloadEvent chunkUnloadEvent) {
+    for (Entity entity : chunkUnloadEvent.getChunk().getEntities()) {
+      for (EntityTracker entityTracker : entityTrackers) {
+        entityTracker.untrack(entity);
+      }
+    }
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onWorldUnload(WorldUnloadEvent worldUnloadEvent) {
+    for (EntityTracker entityTracker : entityTrackers) {
+      entityTracker.untrackWorld(worldUnloadEvent.getWorld());
+    }
+  }
+}
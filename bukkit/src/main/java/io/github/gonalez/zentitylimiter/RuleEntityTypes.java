@@ -0,0 +1,88 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.github.gonalez.zentitylimiter.rule.Rule;
+import io.github.gonalez.zentitylimiter.rule.RuleCollection;
+import org.bukkit.entity.EntityType;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * The entity types allowed by the rules of a {@link RuleCollection} which match {@code ruleFilter}, these are
+ * computed again every time the {@link RuleCollection#getVersion() rules change}. Unknown entity types are skipped
+ * with a warning.
+ */
+class RuleEntityTypes implements Predicate<EntityType> {
+  /** The entity types of a version of the rules. */
+  private static final class Types {
+    final long version;
+    final Set<EntityType> entityTypes;
+
+    Types(long version, Set<EntityType> entityTypes) {
+      this.version = version;
+      this.entityTypes = entityTypes;
+    }
+  }
+
+  private final RuleCollection ruleCollection;
+  private final Predicate<Rule> ruleFilter;
+  private final Logger logger;
+
+  private volatile Types types;
+
+  public RuleEntityTypes(RuleCollection ruleCollection, Predicate<Rule> ruleFilter, Logger logger) {
+    this.ruleCollection = checkNotNull(ruleCollection);
+    this.ruleFilter = checkNotNull(ruleFilter);
+    this.logger = checkNotNull(logger);
+    this.types = computeTypes();
+  }
+
+  private Types computeTypes() {
+    long version = ruleCollection.getVersion();
+    Set<EntityType> entityTypes = EnumSet.noneOf(EntityType.class);
+    for (Rule rule : ruleCollection.getRules()) {
+      if (ruleFilter.test(rule)) {
+        for (String allowedEntity : rule.allowedEntities()) {
+          try {
+            entityTypes.add(EntityType.valueOf(allowedEntity));
+          } catch (IllegalArgumentException e) {
+            logger.warning("Unknown entity type " + allowedEntity + " in rule: " + rule);
+          }
+        }
+      }
+    }
+    return new Types(version, entityTypes);
+  }
+
+  @Override
+  public boolean test(EntityType entityType) {
+    return getTypes().entityTypes.contains(entityType);
+  }
+
+  private Types getTypes() {
+    Types types = this.types;
+    if (types.version != ruleCollection.getVersion()) {
+      this.types = types = computeTypes();
+    }
+    return types;
+  }
+}
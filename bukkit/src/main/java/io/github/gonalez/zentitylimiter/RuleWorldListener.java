@@ -0,0 +1,44 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.github.gonalez.zentitylimiter.rule.IndexedRuleCollectionFinder;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/** Indexes the rules again when a world is loaded or unloaded, so the rules of the world match its entities. */
+class RuleWorldListener implements Listener {
+  private final IndexedRuleCollectionFinder ruleCollectionFinder;
+
+  RuleWorldListener(IndexedRuleCollectionFinder ruleCollectionFinder) {
+    this.ruleCollectionFinder = checkNotNull(ruleCollectionFinder);
+  }
+
+  @EventHandler
+  public void onWorldLoad(WorldLoadEvent worldLoadEvent) {
+    ruleCollectionFinder.invalidate();
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onWorldUnload(WorldUnloadEvent worldUnloadEvent) {
+    ruleCollectionFinder.invalidate();
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez). and contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.zentitylimiter.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Generates a {@code RuleSchema} for each rule type annotated with {@code GenerateRuleSchema}, which creates and
+ * reads the rules by calling their builder and getters directly instead of with reflection.
+ *
+ * <p>A property is an abstract getter of the rule type, and the rule builder must have a {@code set} method with
+ * the same type for each property, otherwise the compilation fails.
+ */
+@SupportedAnnotationTypes(RuleSchemaProcessor.GENERATE_RULE_SCHEMA)
+public class RuleSchemaProcessor extends AbstractProcessor {
+  static final String GENERATE_RULE_SCHEMA = "io.github.gonalez.zentitylimiter.rule.GenerateRuleSchema";
+
+  private static final String RULE_SCHEMA = "io.github.gonalez.zentitylimiter.rule.RuleSchema";
+  private static final String RULE_SERIALIZER = "io.github.gonalez.zentitylimiter.rule.RuleSerializer";
+  private static final String IMMUTABLE_MAP = "com.google.common.collect.ImmutableMap";
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        try {
+          generate(asRuleType(element));
+        } catch (InvalidRuleException e) {
+          processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+        } catch (IOException e) {
+          processingEnv.getMessager().printMessage(
+              Diagnostic.Kind.ERROR, "Could not write the rule schema: " + e, element);
+        }
+      }
+    }
+    return true;
+  }
+
+  private static TypeElement asRuleType(Element element) throws InvalidRuleException {
+    if (element.getKind() != ElementKind.CLASS) {
+      throw new InvalidRuleException(element, "Only rule classes can have a generated schema");
+    }
+    TypeElement ruleType = (TypeElement) element;
+    if (!ruleType.getTypeParameters().isEmpty()) {
+      throw new InvalidRuleException(element, "Generic rule types are not supported");
+    }
+    return ruleType;
+  }
+
+  private void generate(TypeElement ruleType) throws InvalidRuleException, IOException {
+    Elements elements = processingEnv.getElementUtils();
+    Types types = processingEnv.getTypeUtils();
+
+    ExecutableElement builderMethod = findBuilderMethod(ruleType, types);
+    TypeElement builderType = (TypeElement) types.asElement(builderMethod.getReturnType());
+    ExecutableElement buildMethod = findBuildMethod(ruleType, builderType, types);
+
+    List<ExecutableElement> getters = new ArrayList<>();
+    List<ExecutableElement> setters = new ArrayList<>();
+    for (ExecutableElement method : ElementFilter.methodsIn(ruleType.getEnclosedElements())) {
+      if (!method.getModifiers().contains(Modifier.ABSTRACT)
+          || !method.getParameters().isEmpty()
+          || method.getReturnType().getKind() == TypeKind.VOID) {
+        continue;
+      }
+      getters.add(method);
+      setters.add(findSetter(method, builderType, types));
+    }
+
+    String packageName = elements.getPackageOf(ruleType).getQualifiedName().toString();
+    String schemaName = schemaName(ruleType) + "_RuleSchema";
+    String ruleName = ruleType.getQualifiedName().toString();
+    String qualifiedSchemaName = packageName.isEmpty() ? schemaName : packageName + "." + schemaName;
+
+    try (PrintWriter writer =
+             new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedSchemaName, ruleType).openWriter())) {
+      if (!packageName.isEmpty()) {
+        writer.println("package " + packageName + ";");
+        writer.println();
+      }
+      writer.println("/** The generated {@link " + RULE_SCHEMA + "} of {@link " + ruleName + "}. */");
+      writer.println("public final class " + schemaName + " implements " + RULE_SCHEMA + "<" + ruleName + "> {");
+      writer.println("  private static final " + IMMUTABLE_MAP + "<String, Class<?>> PROPERTY_TYPES =");
+      writer.println("      " + IMMUTABLE_MAP + ".<String, Class<?>>builder()");
+      for (ExecutableElement getter : getters) {
+        writer.println("          .put(\"" + getter.getSimpleName() + "\", "
+            + types.erasure(getter.getReturnType()) + ".class)");
+      }
+      writer.println("          .build();");
+      writer.println();
+      writer.println("  @Override");
+      writer.println("  public " + IMMUTABLE_MAP + "<String, Class<?>> propertyTypes() {");
+      writer.println("    return PROPERTY_TYPES;");
+      writer.println("  }");
+      writer.println();
+      writer.println("  @Override");
+      writer.println("  public Builder<" + ruleName + "> newBuilder() {");
+      writer.println("    " + builderMethod.getReturnType() + " builder = "
+          + ruleName + "." + builderMethod.getSimpleName() + "();");
+      writer.println("    return new Builder<" + ruleName + ">() {");
+      writer.println("      @SuppressWarnings(\"unchecked\")");
+      writer.println("      @Override");
+      writer.println("      public void set(String property, Object value) {");
+      writer.println("        switch (property) {");
+      for (int i = 0; i < getters.size(); i++) {
+        writer.println("          case \"" + getters.get(i).getSimpleName() + "\":");
+        writer.println("            builder." + setters.get(i).getSimpleName()
+            + "(" + castValue(getters.get(i).getReturnType()) + ");");
+        writer.println("            break;");
+      }
+      writer.println("          default:");
+      writer.println("            throw new IllegalArgumentException(\"Unknown rule property: \" + property);");
+      writer.println("        }");
+      writer.println("      }");
+      writer.println();
+      writer.println("      @Override");
+      writer.println("      public " + ruleName + " build() {");
+      writer.println("        return builder." + buildMethod.getSimpleName() + "();");
+      writer.println("      }");
+      writer.println("    };");
+      writer.println("  }");
+      writer.println();
+      writer.println("  @Override");
+      writer.println("  public void visitProperties(" + ruleName + " rule, "
+          + RULE_SERIALIZER + ".Visitor visitor) {");
+      for (ExecutableElement getter : getters) {
+        TypeMirror returnType = getter.getReturnType();
+        String valueType = returnType.getKind().isPrimitive()
+            ? types.boxedClass(types.getPrimitiveType(returnType.getKind())).getQualifiedName().toString()
+            : types.erasure(returnType).toString();
+        writer.println("    visitor.visitValue(rule, \"" + getter.getSimpleName() + "\", "
+            + valueType + ".class, rule." + getter.getSimpleName() + "());");
+      }
+      writer.println("  }");
+      writer.println("}");
+    }
+  }
+
+  /** @return the static method of the rule type which returns its builder. */
+  private static ExecutableElement findBuilderMethod(TypeElement ruleType, Types types) throws InvalidRuleException {
+    for (ExecutableElement method : ElementFilter.methodsIn(ruleType.getEnclosedElements())) {
+      if (method.getModifiers().contains(Modifier.STATIC)
+          && method.getParameters().isEmpty()
+          && method.getReturnType().getKind() == TypeKind.DECLARED) {
+        TypeElement returnType = (TypeElement) ((DeclaredType) method.getReturnType()).asElement();
+        if (findBuildMethodOrNull(ruleType, returnType, types) != null) {
+          return method;
+        }
+      }
+    }
+    throw new InvalidRuleException(ruleType, "No static builder method found for rule: " + ruleType);
+  }
+
+  private static ExecutableElement findBuildMethod(
+      TypeElement ruleType, TypeElement builderType, Types types) throws InvalidRuleException {
+    ExecutableElement buildMethod = findBuildMethodOrNull(ruleType, builderType, types);
+    if (buildMethod == null) {
+      throw new InvalidRuleException(builderType, "No build method found for rule: " + ruleType);
+    }
+    return buildMethod;
+  }
+
+  private static ExecutableElement findBuildMethodOrNull(
+      TypeElement ruleType, TypeElement builderType, Types types) {
+    for (ExecutableElement method : ElementFilter.methodsIn(builderType.getEnclosedElements())) {
+      if (!method.getModifiers().contains(Modifier.STATIC)
+          && method.getParameters().isEmpty()
+          && types.isSameType(method.getReturnType(), ruleType.asType())) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  private static ExecutableElement findSetter(
+      ExecutableElement getter, TypeElement builderType, Types types) throws InvalidRuleException {
+    String getterName = getter.getSimpleName().toString();
+    String setterName = "set" + getterName.substring(0, 1).toUpperCase(Locale.ROOT) + getterName.substring(1);
+    for (ExecutableElement method : ElementFilter.methodsIn(builderType.getEnclosedElements())) {
+      if (method.getSimpleName().contentEquals(setterName)
+          && method.getParameters().size() == 1
+          && types.isSameType(method.getParameters().get(0).asType(), getter.getReturnType())) {
+        return method;
+      }
+    }
+    throw new InvalidRuleException(getter,
+        "Rule builder " + builderType + " has no method " + setterName + "(" + getter.getReturnType() + ")");
+  }
+
+  /** @return the name of the schema of the given rule type, with the names of its enclosing types. */
+  private static String schemaName(TypeElement ruleType) {
+    StringBuilder name = new StringBuilder(ruleType.getSimpleName());
+    for (Element enclosing = ruleType.getEnclosingElement();
+         enclosing instanceof TypeElement;
+         enclosing = enclosing.getEnclosingElement()) {
+      name.insert(0, enclosing.getSimpleName() + "_");
+    }
+    return name.toString();
+  }
+
+  /** @return the expression which casts {@code value} to the given property type. */
+  private static String castValue(TypeMirror type) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        return "(Boolean) value";
+      case CHAR:
+        return "(Character) value";
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        // Any number is accepted, for example an Integer for a double
+        return "((Number) value)." + type.getKind().name().toLowerCase(Locale.ROOT) + "Value()";
+      default:
+        return "(" + type + ") value";
+    }
+  }
+
+  /** A rule type whose schema cannot be generated. */
+  private static class InvalidRuleException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    final transient Element element;
+
+    InvalidRuleException(Element element, String message) {
+      super(message);
+      this.element = element;
+    }
+  }
+}